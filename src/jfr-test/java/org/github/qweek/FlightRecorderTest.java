@@ -0,0 +1,90 @@
+package org.github.qweek;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests of the Flight Recorder events, only built on JDK 11 and later by the {@code jfr} profile.
+ */
+class FlightRecorderTest {
+    @Test
+    void testFlightRecorderEvents() throws IOException {
+        DelimiterCache cache = new DelimiterCache();
+        Calculator calculator = new FlightRecorderCalculator(new Calculator_9(cache), Duration.ofHours(1), 10, cache);
+        Calculator scanner = new FlightRecorderCalculator(new ScannerCalculator(), Duration.ZERO, Integer.MAX_VALUE);
+        Calculator rules = new FlightRecorderCalculator(new RuleCalculator(Rules.step(8)), Duration.ZERO, Integer.MAX_VALUE);
+        assertEquals(3, calculator.add("1,2"));
+
+        Path file = Files.createTempFile("calculator", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.github.qweek.Add");
+            recording.enable("org.github.qweek.DelimiterCompile");
+            recording.start();
+            // below both thresholds
+            assertEquals(3, calculator.add("1,2"));
+            assertEquals(10, calculator.add("//;|**\n1;2**1001;3;4"));
+            assertThrows(IllegalArgumentException.class, () -> calculator.add("1,2,3,-4,5"));
+            // every overload is recorded
+            assertEquals(3, scanner.add(new StringReader("1,2")));
+            assertEquals(AddResult.Error.NEGATIVES, scanner.tryAdd("1,-2", Calculator.Validation.FAIL_FAST).getError());
+            // other rules are not counted
+            assertEquals(6, rules.add("1,2,3"));
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> adds = new ArrayList<>();
+            List<RecordedEvent> scans = new ArrayList<>();
+            List<RecordedEvent> others = new ArrayList<>();
+            List<RecordedEvent> compiles = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().equals("org.github.qweek.Add")) {
+                    String name = event.getString("calculator");
+                    (name.equals(Calculator_9.class.getName()) ? adds : name.equals(ScannerCalculator.class.getName()) ? scans : others).add(event);
+                } else if (event.getEventType().getName().equals("org.github.qweek.DelimiterCompile")) {
+                    compiles.add(event);
+                }
+            }
+            assertEquals(2, adds.size());
+            assertEquals(20, adds.get(0).getLong("inputLength"));
+            assertEquals(5, adds.get(0).getInt("tokens"));
+            assertEquals(2, adds.get(0).getInt("delimiters"));
+            assertEquals("OK", adds.get(0).getString("outcome"));
+            assertEquals(5, adds.get(1).getInt("tokens"));
+            assertEquals(1, adds.get(1).getInt("delimiters"));
+            assertEquals("NEGATIVES", adds.get(1).getString("outcome"));
+
+            assertEquals(2, scans.size());
+            assertEquals(-1, scans.get(0).getLong("inputLength"));
+            assertEquals("OK", scans.get(0).getString("outcome"));
+            assertEquals(4, scans.get(1).getLong("inputLength"));
+            assertEquals("NEGATIVES", scans.get(1).getString("outcome"));
+
+            assertEquals(2, scans.get(1).getInt("tokens"));
+
+            assertEquals(1, others.size());
+            assertEquals(0, others.get(0).getInt("tokens"));
+            assertEquals(0, others.get(0).getInt("delimiters"));
+
+            // compiled once for both the calculator and the events
+            assertEquals(1, compiles.size());
+            assertEquals(";|**", compiles.get(0).getString("header"));
+            assertEquals(2, compiles.get(0).getInt("delimiters"));
+            assertEquals(2, compiles.get(0).getInt("maxLength"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.github.qweek;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * JDK Flight Recorder events of the calculators, shown in JMC under "Calculator" next to the JVM events.
+ * <p>
+ * Events are only built when they are enabled in a recording: until then {@link Event#isEnabled()} is a constant false.
+ * The event classes are only loaded if the JVM has {@code jdk.jfr}, see {@link #AVAILABLE}.
+ * <p>
+ * Only built on JDK 11 and later, by the {@code jfr} profile: the other classes look this one up by reflection.
+ */
+final class CalculatorEvents {
+    static final boolean AVAILABLE = available();
+
+    /**
+     * Wraps the compiler of a {@link DelimiterCache} to record {@link DelimiterCompile} events, read by reflection.
+     */
+    static final UnaryOperator<Function<String, Delimiters>> COMPILER = AVAILABLE
+            ? compiler -> header -> compile(compiler, header) : UnaryOperator.identity();
+
+    private CalculatorEvents() {
+    }
+
+    @Name("org.github.qweek.Add")
+    @Label("Add")
+    @Category("Calculator")
+    @Description("Add call slower or larger than the thresholds of a FlightRecorderCalculator")
+    @StackTrace(false)
+    static final class Add extends Event {
+        @Label("Calculator")
+        String calculator;
+
+        @Label("Input Length")
+        @Description("Length of the numbers in chars, or in bytes if encoded, -1 if unknown")
+        long inputLength;
+
+        @Label("Tokens")
+        @Description("Numbers split by the delimiters, 0 unless the calculator follows the rules of Calculator_9")
+        int tokens;
+
+        @Label("Delimiters")
+        int delimiters;
+
+        @Label("Outcome")
+        @Description("OK or the error of the call")
+        String outcome;
+    }
+
+    @Name("org.github.qweek.DelimiterCompile")
+    @Label("Delimiter Compile")
+    @Category("Calculator")
+    @Description("Compilation of a header missing from a delimiter cache")
+    static final class DelimiterCompile extends Event {
+        @Label("Header")
+        String header;
+
+        @Label("Delimiters")
+        int delimiters;
+
+        @Label("Max Length")
+        @Description("Length of the longest delimiter in chars")
+        int maxLength;
+    }
+
+    /**
+     * Compiles a header into a {@link DelimiterCompile} event if enabled.
+     */
+    static Delimiters compile(Function<String, Delimiters> compiler, String header) {
+        DelimiterCompile event = new DelimiterCompile();
+        if (!event.isEnabled()) {
+            return compiler.apply(header);
+        }
+        event.begin();
+        Delimiters delimiters = compiler.apply(header);
+        event.end();
+        if (event.shouldCommit()) {
+            event.header = header;
+            event.delimiters = delimiters.count();
+            event.maxLength = delimiters.maxLength();
+            event.commit();
+        }
+        return delimiters;
+    }
+
+    private static boolean available() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.github.qweek;
+
+import java.time.Duration;
+
+/**
+ * Emits a JDK Flight Recorder event for each call of a calculator slower than {@code threshold}
+ * or with numbers of at least {@code lengthThreshold} chars, to trace outliers next to GC and allocation events.
+ * <p>
+ * Every method is forwarded to the calculator and recorded, the length of readers, channels and files is unknown
+ * so only their duration counts. Batches are forwarded without event.
+ * <p>
+ * Enable the {@code org.github.qweek.Add} event in a recording, e.g.
+ * {@code -XX:StartFlightRecording=settings=profile} with the event enabled in the settings file, or a {@code jdk.jfr.Recording}.
+ * Until then a call costs a check of a constant. Tokens and delimiters are only counted for the calls that are recorded,
+ * with numbers given as a string, when the calculator follows the rules of {@link Calculator_9}. Headers are compiled
+ * by the cache given, e.g. the one of the calculator, which already holds them.
+ */
+public class FlightRecorderCalculator extends ForwardingCalculator {
+    private final long thresholdNanos;
+    private final int lengthThreshold;
+    // null if the tokens are not counted
+    private final DelimiterCache cache;
+
+    public FlightRecorderCalculator(Calculator calculator, Duration threshold, int lengthThreshold) {
+        this(calculator, threshold, lengthThreshold, new DelimiterCache());
+    }
+
+    public FlightRecorderCalculator(Calculator calculator, Duration threshold, int lengthThreshold, DelimiterCache cache) {
+        super(calculator);
+        this.thresholdNanos = threshold.toNanos();
+        this.lengthThreshold = lengthThreshold;
+        this.cache = calculator instanceof Calculator_9 || calculator instanceof ScannerCalculator
+                || calculator instanceof RuleCalculator && ((RuleCalculator) calculator).getRules().equals(Rules.step(9))
+                ? cache : null;
+    }
+
+    @Override
+    <T, E extends Exception> T call(String numbers, long length, Call<T, E> call) throws E {
+        if (!CalculatorEvents.AVAILABLE) {
+            return call.call(calculator);
+        }
+        CalculatorEvents.Add event = new CalculatorEvents.Add();
+        if (!event.isEnabled()) {
+            return call.call(calculator);
+        }
+        long start = System.nanoTime();
+        event.begin();
+        String outcome = "OK";
+        try {
+            T result = call.call(calculator);
+            if (result instanceof AddResult && ((AddResult) result).isError()) {
+                outcome = ((AddResult) result).getError().name();
+            }
+            return result;
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            outcome = AddResult.of(e).getError().name();
+            throw e;
+        } finally {
+            event.end();
+            if ((System.nanoTime() - start >= thresholdNanos || length >= lengthThreshold) && event.shouldCommit()) {
+                event.calculator = calculator.getClass().getName();
+                event.inputLength = length;
+                event.outcome = outcome;
+                count(numbers, event);
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Counts the delimiters and tokens of the numbers in place, with the rules of {@link Calculator_9}.
+     */
+    private void count(String numbers, CalculatorEvents.Add event) {
+        if (cache == null || numbers == null || numbers.isEmpty()) {
+            return;
+        }
+        Delimiters delimiters = Delimiters.DEFAULT;
+        int from = 0;
+        if (numbers.startsWith("//")) {
+            int newLine = numbers.indexOf('\n', 2);
+            if (newLine < 0) {
+                return;
+            }
+            try {
+                delimiters = cache.get(numbers.substring(2, newLine));
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+            from = newLine + 1;
+        }
+        event.delimiters = delimiters.count();
+        if (from == numbers.length()) {
+            return;
+        }
+        int tokens = 1;
+        for (int i = from; i < numbers.length(); ) {
+            int length = delimiters.match(numbers, i, numbers.length());
+            if (length > 0) {
+                tokens++;
+                i += length;
+            } else {
+                i++;
+            }
+        }
+        event.tokens = tokens;
+    }
+
+    @Override
+    public String toString() {
+        return "FlightRecorder" + calculator;
+    }
+}
@@ -0,0 +1,134 @@
+package org.github.qweek;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link Calculator#add(String)} for each calculator on generated numbers.
+ * <p>
+ * Calculators that don't support the generated numbers, e.g. {@link Calculator_1} with more than two numbers,
+ * are measured on their error path, like inputs with negatives or invalid numbers.
+ * <pre>
+ * mvn -P benchmarks package
+ * java -jar target/benchmarks.jar -prof gc -rf json -rff results.json
+ * java -jar target/benchmarks.jar -p size=100000000 -p delimiters='***|%%' -p negatives=0.01
+ * java -jar target/benchmarks.jar -p calculator=Calculator_9 -p metrics=false,true
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CalculatorBenchmark {
+    @Param({"Calculator_1", "Calculator_2", "Calculator_3", "Calculator_4", "Calculator_5",
+            "Calculator_6", "Calculator_7", "Calculator_8", "Calculator_9", "ScannerCalculator",
+            "RuleCalculator"})
+    private String calculator;
+
+    /**
+     * Length of the numbers in chars, header included.
+     */
+    @Param({"10", "10000", "1000000"})
+    private int size;
+
+    /**
+     * Delimiters of the header, "," for none, e.g. "***|%%" for two delimiters of 3 and 2 chars.
+     */
+    @Param({","})
+    private String delimiters;
+
+    /**
+     * Maximum digits of the numbers up to 1000, fewer digits make more numbers for the same size.
+     */
+    @Param({"3"})
+    private int digits;
+
+    @Param({"0.1"})
+    private double overThousand;
+
+    @Param({"0"})
+    private double negatives;
+
+    @Param({"0"})
+    private double invalid;
+
+    /**
+     * Wraps the calculator in an {@link InstrumentedCalculator}, with stage metrics for {@link Calculator_9}.
+     */
+    @Param({"false"})
+    private boolean metrics;
+
+    private Calculator instance;
+    private String numbers;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        if (calculator.equals("RuleCalculator")) {
+            instance = new RuleCalculator(Rules.step(9));
+        } else {
+            instance = (Calculator) Class.forName(getClass().getPackage().getName() + "." + calculator).newInstance();
+        }
+        if (metrics) {
+            CalculatorMetrics recorder = new CalculatorMetrics();
+            if (instance instanceof Calculator_9) {
+                instance = new Calculator_9(new DelimiterCache(), recorder);
+            }
+            instance = new InstrumentedCalculator(instance, recorder);
+        }
+        numbers = numbers(new Random(42));
+    }
+
+    private String numbers(Random random) {
+        String[] split = delimiters.split("[|]");
+        StringBuilder numbers = new StringBuilder(size + 16);
+        if (!delimiters.equals(",")) {
+            numbers.append("//").append(delimiters).append('\n');
+        }
+        int bound = Math.min(1001, (int) Math.pow(10, digits));
+        for (int i = 0; numbers.length() < size; i++) {
+            if (i > 0) {
+                numbers.append(split[i % split.length]);
+            }
+            double kind = random.nextDouble();
+            if (kind < invalid) {
+                numbers.append('x');
+            } else if (kind < invalid + negatives) {
+                numbers.append(-1 - random.nextInt(bound));
+            } else if (kind < invalid + negatives + overThousand) {
+                numbers.append(1001 + random.nextInt(1_000_000));
+            } else {
+                numbers.append(random.nextInt(bound));
+            }
+        }
+        return numbers.toString();
+    }
+
+    @Benchmark
+    public void add(Blackhole blackhole) {
+        try {
+            blackhole.consume(instance.add(numbers));
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void tryAdd(Blackhole blackhole) {
+        blackhole.consume(instance.tryAdd(numbers));
+    }
+}
@@ -0,0 +1,194 @@
+package org.github.qweek;
+
+import static java.lang.String.format;
+
+/**
+ * Outcome of {@link Calculator#tryAdd(String)}: either a sum, or the kind of error with the offset in the input
+ * where it was found. Nothing is thrown or formatted until {@link #toException()} or {@link #getOrThrow()} is called.
+ */
+public final class AddResult {
+    public enum Error {
+        /** The header declares an empty delimiter, the offset is the start of the header. */
+        EMPTY_DELIMITER,
+        /** A number is not an int, the offset is the start of the number. */
+        INVALID_NUMBER,
+        /** Some numbers are negative, the offset is the start of the first negative number. */
+        NEGATIVES,
+        /** The sum doesn't fit an int, the offset is the start of the number that made it overflow. */
+        OVERFLOW,
+        /** Another error of a calculator with other rules, the offset is unknown. */
+        OTHER
+    }
+
+    static final AddResult ZERO = new AddResult(0, null, -1, null, null, null, 0, null);
+
+    private final long sum;
+    private final Error error;
+    private final int offset;
+    private final String number;
+    private final int[] negatives;
+    private final int[] negativeOffsets;
+    private final long negativesCount;
+    private final RuntimeException exception;
+    // message of the exception of a result shared without it, see withoutException()
+    private final String message;
+
+    private AddResult(long sum, Error error, int offset, String number,
+                      int[] negatives, int[] negativeOffsets, long negativesCount, RuntimeException exception) {
+        this(sum, error, offset, number, negatives, negativeOffsets, negativesCount, exception, null);
+    }
+
+    private AddResult(long sum, Error error, int offset, String number, int[] negatives, int[] negativeOffsets,
+                      long negativesCount, RuntimeException exception, String message) {
+        this.sum = sum;
+        this.error = error;
+        this.offset = offset;
+        this.number = number;
+        this.negatives = negatives;
+        this.negativeOffsets = negativeOffsets;
+        this.negativesCount = negativesCount;
+        this.exception = exception;
+        this.message = message;
+    }
+
+    static AddResult sum(long sum) {
+        return sum == 0 ? ZERO : new AddResult(sum, null, -1, null, null, null, 0, null);
+    }
+
+    static AddResult emptyDelimiter(int offset) {
+        return new AddResult(0, Error.EMPTY_DELIMITER, offset, null, null, null, 0, null);
+    }
+
+    static AddResult invalidNumber(String number, int offset) {
+        return new AddResult(0, Error.INVALID_NUMBER, offset, number, null, null, 0, null);
+    }
+
+    static AddResult negatives(Negatives negatives, int offset) {
+        int[] values = negatives.values();
+        return new AddResult(0, Error.NEGATIVES, offset, null, values, negatives.offsets(), negatives.count(), null);
+    }
+
+    static AddResult overflow(int offset) {
+        return new AddResult(0, Error.OVERFLOW, offset, null, null, null, 0, null);
+    }
+
+    /**
+     * Result of a calculator that threw the exception, see {@link Calculator#tryAdd(String)}.
+     */
+    static AddResult of(RuntimeException exception) {
+        String message = String.valueOf(exception.getMessage());
+        Error error = exception instanceof ArithmeticException ? Error.OVERFLOW
+                : message.equals("Delimiter is empty") ? Error.EMPTY_DELIMITER
+                : message.startsWith("Invalid number: '") ? Error.INVALID_NUMBER
+                : message.startsWith("negatives not allowed: ") ? Error.NEGATIVES
+                : Error.OTHER;
+        return new AddResult(0, error, -1, null, null, null, 0, exception);
+    }
+
+    /**
+     * Same result without the exception caught by {@link #of}, for a result returned many times:
+     * {@link #toException()} then builds a new {@link ArithmeticException} for an {@link Error#OVERFLOW},
+     * or {@link IllegalArgumentException} otherwise, with the same message on each call.
+     */
+    AddResult withoutException() {
+        if (exception == null) {
+            return this;
+        }
+        return new AddResult(sum, error, offset, number, negatives, negativeOffsets, negativesCount,
+                null, String.valueOf(exception.getMessage()));
+    }
+
+    public boolean isError() {
+        return error != null;
+    }
+
+    /**
+     * The sum, 0 if {@link #isError()}.
+     */
+    public int getSum() {
+        return (int) sum;
+    }
+
+    /**
+     * The kind of error, null if none.
+     */
+    public Error getError() {
+        return error;
+    }
+
+    /**
+     * The offset in the input of the error, -1 if none or unknown.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * The invalid number of an {@link Error#INVALID_NUMBER} error, null otherwise or if unknown.
+     */
+    public String getNumber() {
+        return number;
+    }
+
+    /**
+     * The first negatives of a {@link Error#NEGATIVES} error in order, at most as many as reported in the message.
+     */
+    public int[] getNegatives() {
+        return negatives == null ? new int[0] : negatives.clone();
+    }
+
+    /**
+     * The offsets in the input of {@link #getNegatives()}, empty unless recorded, see {@link Rules#withNegativeOffsets}.
+     */
+    public int[] getNegativeOffsets() {
+        return negativeOffsets == null ? new int[0] : negativeOffsets.clone();
+    }
+
+    /**
+     * The number of negatives of a {@link Error#NEGATIVES} error.
+     */
+    public long getNegativesCount() {
+        return negativesCount;
+    }
+
+    /**
+     * Returns the sum, or throws the exception {@link Calculator#add(String)} throws.
+     */
+    public int getOrThrow() {
+        return (int) longOrThrow();
+    }
+
+    long longOrThrow() {
+        if (error != null) {
+            throw toException();
+        }
+        return sum;
+    }
+
+    /**
+     * The exception {@link Calculator#add(String)} throws for this error, null if none.
+     */
+    public RuntimeException toException() {
+        if (exception != null || error == null) {
+            return exception;
+        }
+        if (message != null) {
+            return error == Error.OVERFLOW ? new ArithmeticException(message) : new IllegalArgumentException(message);
+        }
+        switch (error) {
+            case EMPTY_DELIMITER:
+                return new IllegalArgumentException("Delimiter is empty");
+            case INVALID_NUMBER:
+                return new IllegalArgumentException(format("Invalid number: '%s'", number));
+            case NEGATIVES:
+                return new IllegalArgumentException(Negatives.message(negatives, negatives.length, negativesCount));
+            default:
+                return new ArithmeticException("integer overflow");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return error == null ? String.valueOf(sum) : error + " at " + offset;
+    }
+}
@@ -0,0 +1,247 @@
+package org.github.qweek;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the {@link Calculator#add(String)} of a calculator on an executor, with at most {@code maxInFlight} inputs
+ * submitted to the executor and not completed yet.
+ * <p>
+ * When saturated, new inputs are either rejected with {@link RejectedExecutionException}
+ * or queued until inputs in flight complete, see {@link Saturation}. Small inputs are coalesced:
+ * consecutive queued inputs run in the same task until they reach {@link #BATCH_CHARS} chars or {@link #BATCH_SIZE} inputs.
+ * The calculator must be thread safe, like all the calculators of this package.
+ */
+public class AsyncCalculator {
+    public enum Saturation {
+        /** Inputs over the limit fail with {@link RejectedExecutionException}, queued inputs count in the limit. */
+        REJECT,
+        /** Inputs over the limit wait in an unbounded queue. */
+        QUEUE
+    }
+
+    static final int BATCH_SIZE = 64;
+    static final int BATCH_CHARS = 4096;
+
+    private final Calculator calculator;
+    private final Executor executor;
+    private final int maxInFlight;
+    private final Saturation saturation;
+
+    private final Queue<Request> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    public AsyncCalculator(Calculator calculator, Executor executor, int maxInFlight, Saturation saturation) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Max in flight must be positive: " + maxInFlight);
+        }
+        this.calculator = Objects.requireNonNull(calculator);
+        this.executor = Objects.requireNonNull(executor);
+        this.maxInFlight = maxInFlight;
+        this.saturation = Objects.requireNonNull(saturation);
+    }
+
+    /**
+     * Completes with the sum, or exceptionally with the exception or error of {@link Calculator#add(String)}.
+     */
+    public CompletableFuture<Integer> addAsync(String numbers) {
+        Request request = new Request(numbers);
+        if (saturation == Saturation.REJECT) {
+            int current;
+            do {
+                current = queued.get();
+                if (current + inFlight.get() >= maxInFlight) {
+                    rejected.increment();
+                    request.result.completeExceptionally(new RejectedExecutionException("Too many inputs in flight: " + maxInFlight));
+                    return request.result;
+                }
+            } while (!queued.compareAndSet(current, current + 1));
+        } else {
+            queued.incrementAndGet();
+        }
+        queue.add(request);
+        drain();
+        return request.result;
+    }
+
+    /**
+     * Same as {@link #addAllAsync(List)}.
+     */
+    public CompletableFuture<int[]> addAllAsync(String... inputs) {
+        return addAllAsync(Arrays.asList(inputs));
+    }
+
+    /**
+     * Completes with the sums of all the inputs in order, or exceptionally with a {@link BatchException}
+     * like {@link Calculator#addAll(List)}, rejected inputs included. An error of an input is reported
+     * as a {@link CompletionException} caused by the error.
+     */
+    public CompletableFuture<int[]> addAllAsync(List<String> inputs) {
+        List<CompletableFuture<Integer>> futures = new ArrayList<>(inputs.size());
+        for (String input : inputs) {
+            futures.add(addAsync(input));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((ignored, e) -> {
+            int[] results = new int[futures.size()];
+            SortedMap<Integer, RuntimeException> failures = new TreeMap<>();
+            for (int i = 0; i < results.length; i++) {
+                try {
+                    results[i] = futures.get(i).join();
+                } catch (CancellationException failure) {
+                    // thrown as is by join, without cause
+                    failures.put(i, failure);
+                } catch (CompletionException failure) {
+                    Throwable cause = failure.getCause();
+                    failures.put(i, cause instanceof RuntimeException ? (RuntimeException) cause : failure);
+                }
+            }
+            if (!failures.isEmpty()) {
+                throw new BatchException(results, failures);
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Inputs waiting for room in flight.
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * Inputs submitted to the executor and not completed yet.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Inputs rejected by {@link Saturation#REJECT} or by the executor.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * Total time the completed inputs waited between {@link #addAsync(String)} and the start of their computation.
+     */
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    /**
+     * Submits batches of queued inputs while there is room in flight.
+     */
+    private void drain() {
+        while (!queue.isEmpty()) {
+            List<Request> batch = new ArrayList<>();
+            int chars = 0;
+            while (batch.size() < BATCH_SIZE && chars < BATCH_CHARS && reserve()) {
+                Request request = queue.poll();
+                if (request == null) {
+                    inFlight.decrementAndGet();
+                    break;
+                }
+                queued.decrementAndGet();
+                batch.add(request);
+                chars += request.numbers == null ? 0 : request.numbers.length();
+            }
+            if (batch.isEmpty()) {
+                // saturated, or another thread took the inputs: the last completion drains again
+                if (inFlight.get() >= maxInFlight) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                executor.execute(() -> run(batch));
+            } catch (RejectedExecutionException e) {
+                // the executor is saturated or shut down, the next batches are tried anyway
+                inFlight.addAndGet(-batch.size());
+                rejected.add(batch.size());
+                for (Request request : batch) {
+                    request.result.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private boolean reserve() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= maxInFlight) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void run(List<Request> batch) {
+        long start = System.nanoTime();
+        Object[] outcomes = new Object[batch.size()];
+        try {
+            for (int i = 0; i < outcomes.length; i++) {
+                Request request = batch.get(i);
+                waitNanos.add(start - request.created);
+                try {
+                    outcomes[i] = calculator.add(request.numbers);
+                } catch (RuntimeException e) {
+                    outcomes[i] = e;
+                }
+            }
+        } catch (Throwable e) {
+            // an error fails the inputs not computed yet, and is still thrown to the executor
+            for (int i = 0; i < outcomes.length; i++) {
+                if (outcomes[i] == null) {
+                    outcomes[i] = e;
+                }
+            }
+            throw e;
+        } finally {
+            // room is made before completion, so the callbacks of the futures can submit more inputs
+            inFlight.addAndGet(-outcomes.length);
+            completed.add(outcomes.length);
+            for (int i = 0; i < outcomes.length; i++) {
+                if (outcomes[i] instanceof Throwable) {
+                    batch.get(i).result.completeExceptionally((Throwable) outcomes[i]);
+                } else {
+                    batch.get(i).result.complete((Integer) outcomes[i]);
+                }
+            }
+            drain();
+        }
+    }
+
+    private static final class Request {
+        private final String numbers;
+        private final long created = System.nanoTime();
+        private final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        private Request(String numbers) {
+            this.numbers = numbers;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.github.qweek;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+
+import static java.lang.String.format;
+
+/**
+ * Thrown by {@link Calculator#addAll} when some of the inputs failed, after all of them were added.
+ * Keeps the results of the other inputs and the exception of each failed input by its index.
+ */
+public class BatchException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] results;
+    private final SortedMap<Integer, RuntimeException> failures;
+
+    BatchException(int[] results, SortedMap<Integer, RuntimeException> failures) {
+        super(format("%d of %d inputs failed, first at %d: %s", failures.size(), results.length,
+                failures.firstKey(), failures.get(failures.firstKey()).getMessage()), failures.get(failures.firstKey()));
+        this.results = results;
+        this.failures = Collections.unmodifiableSortedMap(failures);
+    }
+
+    /**
+     * Sums of all the inputs in order, 0 for the failed ones.
+     */
+    public int[] getResults() {
+        return results.clone();
+    }
+
+    /**
+     * Exceptions of the failed inputs by index, in order.
+     */
+    public Map<Integer, RuntimeException> getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,111 @@
+package org.github.qweek;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Scans the body of UTF-8 encoded numbers with the rules of {@link Calculator_9} at the byte level.
+ * A region can be scanned on its own if it starts at the beginning of a number.
+ */
+final class ByteScanner {
+    private final Delimiters delimiters;
+    // digits can be parsed 8 at a time only if no delimiter can start in the middle of them
+    private final boolean swar;
+
+    ByteScanner(Delimiters delimiters) {
+        this.delimiters = delimiters;
+        boolean swar = true;
+        for (byte digit = '0'; digit <= '9'; digit++) {
+            swar &= !delimiters.contains(digit);
+        }
+        this.swar = swar;
+    }
+
+    /**
+     * Returns the outcome of the whole body in {@code bytes[from..to)}.
+     * Malformed bytes are decoded as U+FFFD, which its encoded form can't match, so a body split by U+FFFD is decoded first.
+     */
+    static AddResult add(Delimiters delimiters, ByteBuffer bytes, int from, int to) {
+        if (!isExact(delimiters)) {
+            String body = decode(bytes, from, to);
+            return CharScanner.scan(delimiters, body, 0, body.length(), true, new PartialSum()).toResult();
+        }
+        return new ByteScanner(delimiters).scan(bytes, from, to, true).toResult();
+    }
+
+    /**
+     * Returns true if scanning the bytes gives the same tokens as scanning the decoded chars, even for malformed bytes.
+     */
+    static boolean isExact(Delimiters delimiters) {
+        return !delimiters.contains('\uFFFD');
+    }
+
+    /**
+     * Scans {@code bytes[from..to)}, a region that is not {@code last} ends right after a delimiter.
+     * Stops at the first invalid number.
+     */
+    PartialSum scan(ByteBuffer bytes, int from, int to, boolean last) {
+        PartialSum partial = new PartialSum();
+        NumberParser number = new NumberParser();
+        int start = from;
+        boolean ascii = true;
+
+        int i = from;
+        while (true) {
+            int delimiter = i < to ? delimiters.match(bytes, i, to) : 0;
+            if (delimiter > 0 || i == to && last) {
+                if (!ascii && !number.isMalformed()) {
+                    // numbers with non ascii digits are rare enough to be decoded
+                    String decoded = decode(bytes, start, i);
+                    number.reset();
+                    for (int k = 0; k < decoded.length(); k++) {
+                        number.append(decoded.charAt(k));
+                    }
+                }
+                if (!number.isNumber()) {
+                    partial.invalid(decode(bytes, start, i), start);
+                    return partial;
+                }
+                if (!partial.add(number.value(), start)) {
+                    return partial;
+                }
+            }
+            if (i == to) {
+                return partial;
+            }
+            if (delimiter > 0) {
+                i += delimiter;
+                start = i;
+                number.reset();
+                ascii = true;
+                continue;
+            }
+
+            if (swar && ascii && !number.isMalformed() && to - i >= 8) {
+                long word = Digits.word(bytes, i);
+                int count = Digits.leading(word);
+                if (count > 0) {
+                    number.appendDigits(Digits.parse(word, count), count);
+                    i += count;
+                    continue;
+                }
+            }
+
+            byte b = bytes.get(i++);
+            if (b < 0) {
+                ascii = false;
+            } else if (ascii) {
+                number.append((char) b);
+            }
+        }
+    }
+
+    private static String decode(ByteBuffer bytes, int from, int to) {
+        byte[] encoded = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            encoded[i - from] = bytes.get(i);
+        }
+        return new String(encoded, UTF_8);
+    }
+}
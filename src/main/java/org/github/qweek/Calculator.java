@@ -1,14 +1,160 @@
 package org.github.qweek;
 
+import com.google.common.io.CharStreams;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.stream.IntStream;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 public interface Calculator {
+    enum Validation {
+        /** Every number is checked, all the negatives are reported, the default of {@link #add(String)}. */
+        COLLECT_ALL,
+        /** The first negative, invalid number or overflow stops the scan, a negative is reported alone. */
+        FAIL_FAST
+    }
+
     /**
      * Create a simple string calculator with a method int add(String numbers)
      */
     int add(String numbers);
 
+    /**
+     * Same as {@link #add(String)}, but an error is returned instead of thrown.
+     * By default the exception of {@link #add(String)} is caught, so the offset of the error is unknown.
+     */
+    default AddResult tryAdd(String numbers) {
+        try {
+            return AddResult.sum(add(numbers));
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return AddResult.of(e);
+        }
+    }
+
+    /**
+     * Same as {@link #tryAdd(String)} with a policy for errors, see {@link Validation}.
+     * By default the whole input is scanned and the errors are the ones of {@link Validation#COLLECT_ALL}.
+     */
+    default AddResult tryAdd(String numbers, Validation validation) {
+        return tryAdd(numbers);
+    }
+
+    /**
+     * Same as {@link #add(String)}, but the sum is a long and doesn't overflow past {@link Integer#MAX_VALUE}.
+     * By default the sum is limited to the range of {@link #add(String)}.
+     */
+    default long addLong(String numbers) {
+        return add(numbers);
+    }
+
+    /**
+     * Same as {@link #add(String)} for the numbers in {@code numbers[start..end)}, e.g. one of many in a large buffer.
+     * By default the chars are copied into a string first.
+     */
+    default int add(CharSequence numbers, int start, int end) {
+        return numbers == null ? 0 : add(numbers.subSequence(start, end).toString());
+    }
+
+    /**
+     * Same as {@link #add(String)} for numbers read from a reader, by default the whole input is read in memory first.
+     */
+    default int add(Reader numbers) throws IOException {
+        return numbers == null ? 0 : add(CharStreams.toString(numbers));
+    }
+
+    /**
+     * Same as {@link #add(String)} for UTF-8 encoded numbers read from a channel, malformed bytes are replaced as by {@code new String(bytes, UTF_8)}.
+     */
+    default int add(ReadableByteChannel numbers) throws IOException {
+        if (numbers == null) {
+            return 0;
+        }
+        return add(Channels.newReader(numbers, UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), -1));
+    }
+
+    /**
+     * Same as {@link #add(String)} for the UTF-8 encoded numbers in {@code utf8[offset..offset + length)},
+     * malformed bytes are replaced as by {@code new String(bytes, UTF_8)}. By default the bytes are decoded first.
+     */
+    default int add(byte[] utf8, int offset, int length) {
+        return utf8 == null ? 0 : add(new String(utf8, offset, length, UTF_8));
+    }
+
+    /**
+     * Same as {@link #add(byte[], int, int)} for the remaining bytes of a heap or direct buffer, its position doesn't change.
+     */
+    default int add(ByteBuffer utf8) {
+        return utf8 == null ? 0 : add(UTF_8.decode(utf8.duplicate()).toString());
+    }
+
+    /**
+     * Same as {@link #add(ReadableByteChannel)} for the content of a file.
+     */
+    default int addFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return add(channel);
+        }
+    }
+
+    /**
+     * Same as {@link #addAll(List)}.
+     */
+    default int[] addAll(String... inputs) {
+        return addAll(Arrays.asList(inputs));
+    }
+
+    /**
+     * Adds each input as {@link #add(String)} would. A failed input doesn't stop the others:
+     * if any failed, a {@link BatchException} with the results and the failures by index is thrown at the end.
+     */
+    default int[] addAll(List<String> inputs) {
+        int[] results = new int[inputs.size()];
+        SortedMap<Integer, RuntimeException> failures = new TreeMap<>();
+        for (int i = 0; i < results.length; i++) {
+            try {
+                results[i] = add(inputs.get(i));
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                failures.put(i, e);
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new BatchException(results, failures);
+        }
+        return results;
+    }
+
     default int sum(IntStream numbers) {
         return numbers == null ? 0 : numbers.reduce(Math::addExact).orElse(0);
     }
+
+    /**
+     * Same as {@link #sum(IntStream)}, overflows only past the range of a long.
+     */
+    default long sumLong(IntStream numbers) {
+        return sumExact(numbers).longValueExact();
+    }
+
+    /**
+     * Same as {@link #sum(IntStream)}, never overflows: ints are added to a long that spills into a big integer
+     * once per block, without a check per element.
+     */
+    default BigInteger sumExact(IntStream numbers) {
+        return numbers == null ? BigInteger.ZERO : numbers.collect(WideSum::new, WideSum::add, WideSum::combine).value();
+    }
 }
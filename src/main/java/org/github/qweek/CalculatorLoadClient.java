@@ -0,0 +1,209 @@
+package org.github.qweek;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Load test of a {@link CalculatorServer}: on each connection a thread sends pipelined requests
+ * while another thread reads and checks their responses.
+ * <pre>
+ * java -cp target/classes:guava-27.0-jre.jar org.github.qweek.CalculatorLoadClient localhost 7000 LINE 8 1000000 64
+ * </pre>
+ */
+public class CalculatorLoadClient {
+    public static final class Report {
+        private final long requests;
+        private final long mismatches;
+        private final long nanos;
+
+        private Report(long requests, long mismatches, long nanos) {
+            this.requests = requests;
+            this.mismatches = mismatches;
+            this.nanos = nanos;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * Responses that differ from {@link ScannerCalculator#tryAdd(String)}.
+         */
+        public long getMismatches() {
+            return mismatches;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d requests in %d ms, %.0f requests/s, %d mismatches",
+                    requests, nanos / 1_000_000, requests * 1e9 / Math.max(1, nanos), mismatches);
+        }
+    }
+
+    private final InetSocketAddress address;
+    private final CalculatorServer.Framing framing;
+
+    public CalculatorLoadClient(InetSocketAddress address, CalculatorServer.Framing framing) {
+        this.address = address;
+        this.framing = framing;
+    }
+
+    /**
+     * Sends {@code requests} requests on each of the {@code connections}, cycling through the {@code inputs},
+     * with up to {@code pipeline} requests waiting for their responses on a connection.
+     */
+    public Report run(List<String> inputs, int connections, int requests, int pipeline) throws IOException, InterruptedException {
+        ScannerCalculator calculator = new ScannerCalculator();
+        List<byte[]> encoded = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (String input : inputs) {
+            encoded.add(request(input));
+            expected.add(CalculatorServer.response(calculator.tryAdd(input)));
+        }
+
+        LongAdder mismatches = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(2 * connections);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> readers = new ArrayList<>();
+            List<Future<?>> writers = new ArrayList<>();
+            for (int c = 0; c < connections; c++) {
+                int first = c;
+                Socket socket = new Socket(address.getAddress(), address.getPort());
+                socket.setTcpNoDelay(true);
+                // requests sent and not answered yet
+                Semaphore pending = new Semaphore(pipeline);
+                writers.add(executor.submit(() -> {
+                    try {
+                        OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+                        for (int i = 0; i < requests; i++) {
+                            if (!pending.tryAcquire()) {
+                                // the pipeline is full, send the batch then wait for a response
+                                out.flush();
+                                pending.acquire();
+                            }
+                            out.write(encoded.get((first + i) % inputs.size()));
+                        }
+                        out.flush();
+                    } catch (IOException e) {
+                        // stops the reader too
+                        socket.close();
+                        throw e;
+                    }
+                    return null;
+                }));
+                readers.add(executor.submit(() -> {
+                    try (Socket closing = socket) {
+                        DataInputStream in = new DataInputStream(new BufferedInputStream(closing.getInputStream(), 1 << 16));
+                        for (int i = 0; i < requests; i++) {
+                            if (!expected.get((first + i) % inputs.size()).equals(response(in))) {
+                                mismatches.increment();
+                            }
+                            pending.release();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            // a failed reader leaves its writer waiting, it is interrupted below
+            List<Future<?>> futures = new ArrayList<>(readers);
+            futures.addAll(writers);
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return new Report((long) connections * requests, mismatches.sum(), System.nanoTime() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Encodes the request of {@code numbers} with the framing of the server.
+     */
+    byte[] request(String numbers) {
+        if (framing == CalculatorServer.Framing.LENGTH_PREFIXED) {
+            byte[] bytes = numbers.getBytes(UTF_8);
+            return ByteBuffer.allocate(bytes.length + 4).putInt(bytes.length).put(bytes).array();
+        }
+        int newLine = numbers.startsWith("//") ? numbers.indexOf('\n', 2) : -1;
+        if (newLine >= 0) {
+            numbers = numbers.substring(0, newLine) + "\\n" + numbers.substring(newLine + 1);
+        }
+        if (numbers.indexOf('\n') >= 0 || numbers.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("New line out of the header: " + numbers);
+        }
+        return (numbers + '\n').getBytes(UTF_8);
+    }
+
+    private String response(DataInputStream in) throws IOException {
+        if (framing == CalculatorServer.Framing.LENGTH_PREFIXED) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, UTF_8);
+        }
+        ByteArrayOutputStream line = new ByteArrayOutputStream(16);
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0) {
+                throw new EOFException();
+            }
+            line.write(b);
+        }
+        return new String(line.toByteArray(), UTF_8);
+    }
+
+    /**
+     * Arguments: host port [framing [connections [requests per connection [pipeline]]]].
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        InetSocketAddress address = new InetSocketAddress(args[0], Integer.parseInt(args[1]));
+        CalculatorServer.Framing framing = args.length > 2 ? CalculatorServer.Framing.valueOf(args[2]) : CalculatorServer.Framing.LINE;
+        int connections = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int requests = args.length > 4 ? Integer.parseInt(args[4]) : 100_000;
+        int pipeline = args.length > 5 ? Integer.parseInt(args[5]) : 64;
+
+        Random random = new Random(42);
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder numbers = new StringBuilder(i % 4 == 0 ? "//;|**\n" : "");
+            for (int j = 0, count = 1 + random.nextInt(100); j < count; j++) {
+                if (j > 0) {
+                    numbers.append(i % 4 == 0 ? (j % 2 == 0 ? ";" : "**") : ",");
+                }
+                numbers.append(random.nextInt(1100) - (random.nextInt(100) == 0 ? 1100 : 0));
+            }
+            inputs.add(numbers.toString());
+        }
+
+        System.out.println(new CalculatorLoadClient(address, framing).run(inputs, connections, requests, pipeline));
+    }
+}
@@ -0,0 +1,266 @@
+package org.github.qweek;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in counters and histograms of calculators, recorded by an {@link InstrumentedCalculator}
+ * and by the stages of a {@link Calculator_9} created with metrics.
+ * <p>
+ * Every counter and histogram bucket is a {@link LongAdder}, so concurrent calls don't contend.
+ * Histograms have a bucket per power of 2: bucket {@code i} counts values in {@code [2^(i-1), 2^i)}, bucket 0 counts 0.
+ * The metrics are read with {@link #getSnapshot()}, also exposed by {@link #register(String)} as a platform MXBean.
+ */
+public final class CalculatorMetrics implements CalculatorMetricsMXBean {
+    public enum Stage {
+        /** Split of the "//" header from the numbers. */
+        HEADER,
+        /** Lookup or compilation of the delimiters of the header. */
+        DELIMITERS,
+        /** Tokenization, conversion, filtering and sum, fused in a single pass over the numbers. */
+        SCAN,
+        /** The whole call. */
+        TOTAL
+    }
+
+    private static final int BUCKETS = 65;
+    private static final CalculatorMetrics DISABLED = new CalculatorMetrics(false);
+
+    private final boolean enabled;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder ignored = new LongAdder();
+    private final LongAdder negativeRejections = new LongAdder();
+    private final LongAdder invalidRejections = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    private final LongAdder emptyDelimiters = new LongAdder();
+    private final LongAdder[] inputSizes = histogram();
+    private final Map<Stage, LongAdder[]> latencies = new EnumMap<>(Stage.class);
+
+    public CalculatorMetrics() {
+        this(true);
+    }
+
+    private CalculatorMetrics(boolean enabled) {
+        this.enabled = enabled;
+        for (Stage stage : Stage.values()) {
+            latencies.put(stage, histogram());
+        }
+    }
+
+    /**
+     * Metrics that record nothing, the default of the calculators.
+     */
+    public static CalculatorMetrics disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server as {@code org.github.qweek:type=CalculatorMetrics,name=<name>}.
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("org.github.qweek:type=CalculatorMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Returns the start of a stage, 0 if disabled.
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a stage started at {@code start}, returns its end to start the next stage.
+     */
+    long stop(Stage stage, long start) {
+        if (!enabled) {
+            return 0;
+        }
+        long end = System.nanoTime();
+        latencies.get(stage)[bucket(end - start)].increment();
+        return end;
+    }
+
+    /**
+     * Records a call with an input of {@code inputLength} chars or bytes. The call is always counted,
+     * but an unknown (negative) length is left out of the input size histogram.
+     */
+    void recordCall(long inputLength) {
+        if (enabled) {
+            calls.increment();
+            if (inputLength >= 0) {
+                inputSizes[bucket(inputLength)].increment();
+            }
+        }
+    }
+
+    void recordTokens(long count, long ignoredCount) {
+        if (enabled) {
+            tokens.add(count);
+            ignored.add(ignoredCount);
+        }
+    }
+
+    void recordFailure(RuntimeException e) {
+        if (enabled) {
+            recordError(AddResult.of(e).getError());
+        }
+    }
+
+    /**
+     * Records the error of a result, nothing if null.
+     */
+    void recordError(AddResult.Error error) {
+        if (!enabled || error == null) {
+            return;
+        }
+        switch (error) {
+            case NEGATIVES:
+                negativeRejections.increment();
+                break;
+            case INVALID_NUMBER:
+                invalidRejections.increment();
+                break;
+            case OVERFLOW:
+                overflows.increment();
+                break;
+            case EMPTY_DELIMITER:
+                emptyDelimiters.increment();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        Map<Stage, long[]> stages = new EnumMap<>(Stage.class);
+        for (Map.Entry<Stage, LongAdder[]> entry : latencies.entrySet()) {
+            stages.put(entry.getKey(), sums(entry.getValue()));
+        }
+        return new Snapshot(calls.sum(), tokens.sum(), ignored.sum(), negativeRejections.sum(), invalidRejections.sum(),
+                overflows.sum(), emptyDelimiters.sum(), sums(inputSizes), stages);
+    }
+
+    private static int bucket(long value) {
+        return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    private static LongAdder[] histogram() {
+        LongAdder[] buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+        return buckets;
+    }
+
+    private static long[] sums(LongAdder[] buckets) {
+        long[] sums = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            sums[i] = buckets[i].sum();
+        }
+        return sums;
+    }
+
+    /**
+     * Values of the metrics at a point in time, each counter is read once but not all at the same instant.
+     */
+    public static final class Snapshot {
+        private final long calls;
+        private final long tokens;
+        private final long ignored;
+        private final long negativeRejections;
+        private final long invalidRejections;
+        private final long overflows;
+        private final long emptyDelimiters;
+        private final long[] inputSizes;
+        private final Map<Stage, long[]> latencies;
+
+        private Snapshot(long calls, long tokens, long ignored, long negativeRejections, long invalidRejections,
+                         long overflows, long emptyDelimiters, long[] inputSizes, Map<Stage, long[]> latencies) {
+            this.calls = calls;
+            this.tokens = tokens;
+            this.ignored = ignored;
+            this.negativeRejections = negativeRejections;
+            this.invalidRejections = invalidRejections;
+            this.overflows = overflows;
+            this.emptyDelimiters = emptyDelimiters;
+            this.inputSizes = inputSizes;
+            this.latencies = latencies;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        /**
+         * Numbers parsed by the stages, including ignored and negative ones.
+         */
+        public long getTokens() {
+            return tokens;
+        }
+
+        /**
+         * Numbers bigger than 1000, ignored by the sum.
+         */
+        public long getIgnored() {
+            return ignored;
+        }
+
+        public long getNegativeRejections() {
+            return negativeRejections;
+        }
+
+        public long getInvalidRejections() {
+            return invalidRejections;
+        }
+
+        public long getOverflows() {
+            return overflows;
+        }
+
+        public long getEmptyDelimiters() {
+            return emptyDelimiters;
+        }
+
+        /**
+         * Histogram of the lengths of the inputs in chars.
+         */
+        public long[] getInputSizes() {
+            return inputSizes.clone();
+        }
+
+        /**
+         * Histogram of the latencies of a stage in nanoseconds.
+         */
+        public long[] getLatencies(Stage stage) {
+            return latencies.get(stage).clone();
+        }
+
+        public long[] getHeaderLatencies() {
+            return getLatencies(Stage.HEADER);
+        }
+
+        public long[] getDelimitersLatencies() {
+            return getLatencies(Stage.DELIMITERS);
+        }
+
+        public long[] getScanLatencies() {
+            return getLatencies(Stage.SCAN);
+        }
+
+        public long[] getTotalLatencies() {
+            return getLatencies(Stage.TOTAL);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package org.github.qweek;
+
+/**
+ * Management interface of {@link CalculatorMetrics}, the snapshot is exposed as a composite attribute.
+ */
+public interface CalculatorMetricsMXBean {
+    CalculatorMetrics.Snapshot getSnapshot();
+}
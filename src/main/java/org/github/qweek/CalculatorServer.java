@@ -0,0 +1,366 @@
+package org.github.qweek;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Serves {@link ScannerCalculator#add(String)} over TCP on a single {@link Selector} event loop.
+ * <p>
+ * A request is UTF-8 encoded numbers, the response is the sum or "ERR " followed by the message of the exception.
+ * Clients can send many requests without waiting for the responses, which are sent back in order.
+ * Requests are scanned in place in pooled direct buffers, and the responses to all the requests of a read are written at once.
+ * <p>
+ * With {@link Framing#LINE} requests and responses end with "\n": a request can't contain a new line,
+ * so the new line that ends the header is written as the two chars "\n", e.g. "//;\n1;2" is sent as {@code //;\n1;2\n}.
+ * With {@link Framing#LENGTH_PREFIXED} requests and responses are prefixed by their length in bytes as a big endian int.
+ * <p>
+ * A client that sends a request larger than {@link #MAX_REQUEST_SIZE} bytes, or fails in any other way, is disconnected
+ * without disturbing the other connections.
+ */
+public class CalculatorServer implements Closeable {
+    public enum Framing {
+        LINE,
+        LENGTH_PREFIXED
+    }
+
+    /**
+     * Largest request in bytes, without its framing.
+     */
+    public static final int MAX_REQUEST_SIZE = 1 << 26;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int POOLED_BUFFERS = 256;
+
+    private final Framing framing;
+    private final int maxRequestSize;
+    // the end of the header in a request
+    private final byte[] headerEnd;
+    private final ScannerCalculator calculator;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    // direct buffers of BUFFER_SIZE, only used by the event loop
+    private final Deque<ByteBuffer> buffers = new ArrayDeque<>();
+    private Thread loop;
+    private volatile boolean closed;
+
+    public CalculatorServer(InetSocketAddress address, Framing framing) throws IOException {
+        this(address, framing, new DelimiterCache());
+    }
+
+    public CalculatorServer(InetSocketAddress address, Framing framing, DelimiterCache cache) throws IOException {
+        this(address, framing, cache, MAX_REQUEST_SIZE);
+    }
+
+    CalculatorServer(InetSocketAddress address, Framing framing, DelimiterCache cache, int maxRequestSize) throws IOException {
+        this.framing = framing;
+        this.maxRequestSize = maxRequestSize;
+        this.headerEnd = framing == Framing.LINE ? "\\n".getBytes(UTF_8) : new byte[]{'\n'};
+        this.calculator = new ScannerCalculator(cache);
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * The bound address, with the actual port if the port was 0.
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    /**
+     * Starts the event loop in a new thread.
+     */
+    public synchronized CalculatorServer start() {
+        if (loop == null && !closed) {
+            loop = new Thread(this::run, "calculator-server");
+            loop.setDaemon(true);
+            loop.start();
+        }
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Thread loop;
+        synchronized (this) {
+            loop = this.loop;
+            closed = true;
+        }
+        if (loop == null) {
+            selector.close();
+            server.close();
+            return;
+        }
+        selector.wakeup();
+        try {
+            loop.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Arguments: port [framing].
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Framing framing = args.length > 1 ? Framing.valueOf(args[1]) : Framing.LINE;
+        CalculatorServer server = new CalculatorServer(new InetSocketAddress(Integer.parseInt(args[0])), framing).start();
+        System.out.println("Listening on " + server.getAddress() + " with " + framing + " framing");
+        server.loop.join();
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isWritable()) {
+                            connection.writable();
+                        } else if (key.isReadable()) {
+                            connection.readable();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        // only this connection is lost, the loop keeps serving the others
+                        connection.close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() != null) {
+                    ((Connection) key.attachment()).close();
+                }
+            }
+            try {
+                selector.close();
+                server.close();
+            } catch (IOException e) {
+                // nothing more to do once stopped
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    private ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private void release(ByteBuffer buffer) {
+        // larger buffers of large requests are left to the garbage collector
+        if (buffer.capacity() == BUFFER_SIZE && buffers.size() < POOLED_BUFFERS) {
+            buffer.clear();
+            buffers.push(buffer);
+        }
+    }
+
+    static String response(AddResult result) {
+        return result.isError() ? "ERR " + result.toException().getMessage() : String.valueOf(result.getSum());
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private SelectionKey key;
+        // requests received and not answered yet, in write mode between events
+        private ByteBuffer in = acquire();
+        // responses not written yet, in write mode between events
+        private ByteBuffer out = acquire();
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void readable() throws IOException {
+            if (!in.hasRemaining()) {
+                // a request larger than the buffer, up to the largest request with its framing
+                int max = maxRequestSize + (framing == Framing.LINE ? 2 : 4);
+                if (in.capacity() >= max) {
+                    close();
+                    return;
+                }
+                in = grow(in, (int) Math.min(in.capacity() * 2L, max));
+            }
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            process();
+        }
+
+        private void writable() throws IOException {
+            if (flush()) {
+                // read again, starting with the requests left while the responses were waiting
+                process();
+            }
+        }
+
+        /**
+         * Answers the complete requests received so far, then writes all the responses at once.
+         */
+        private void process() throws IOException {
+            in.flip();
+            while (true) {
+                int start = in.position();
+                int from;
+                int to;
+                int next;
+                if (framing == Framing.LINE) {
+                    int newLine = -1;
+                    for (int i = start; i < in.limit(); i++) {
+                        if (in.get(i) == '\n') {
+                            newLine = i;
+                            break;
+                        }
+                    }
+                    if (newLine < 0) {
+                        // the end of the request may be "\r" not followed by "\n" yet
+                        if (in.limit() - start > maxRequestSize + 1) {
+                            close();
+                            return;
+                        }
+                        break;
+                    }
+                    from = start;
+                    to = newLine > start && in.get(newLine - 1) == '\r' ? newLine - 1 : newLine;
+                    next = newLine + 1;
+                    if (to - from > maxRequestSize) {
+                        close();
+                        return;
+                    }
+                } else {
+                    if (in.remaining() < 4) {
+                        break;
+                    }
+                    int length = in.getInt(start);
+                    if (length < 0 || length > maxRequestSize) {
+                        close();
+                        return;
+                    }
+                    if (in.remaining() < 4 + length) {
+                        if (4 + length > in.capacity()) {
+                            in.position(start);
+                            in.compact();
+                            in = grow(in, 4 + length);
+                            in.flip();
+                        }
+                        break;
+                    }
+                    from = start + 4;
+                    to = from + length;
+                    next = to;
+                }
+                if (!respond(calculator.add(in, from, to, headerEnd))) {
+                    // the client doesn't read the responses, stop reading its requests until they are written
+                    in.position(start);
+                    break;
+                }
+                in.position(next);
+            }
+            in.compact();
+            flush();
+        }
+
+        /**
+         * Appends the response, returns false if there is no room left until the pending responses are written.
+         */
+        private boolean respond(AddResult result) throws IOException {
+            byte[] response = response(result).getBytes(UTF_8);
+            int size = response.length + (framing == Framing.LINE ? 1 : 4);
+            if (out.remaining() < size && (!flush() || out.remaining() < size)) {
+                if (out.position() > 0) {
+                    return false;
+                }
+                out = grow(out, size);
+            }
+            if (framing == Framing.LENGTH_PREFIXED) {
+                out.putInt(response.length);
+            }
+            out.put(response);
+            if (framing == Framing.LINE) {
+                out.put((byte) '\n');
+            }
+            return true;
+        }
+
+        /**
+         * Writes the pending responses, returns true if they are all written.
+         */
+        private boolean flush() throws IOException {
+            out.flip();
+            channel.write(out);
+            boolean written = !out.hasRemaining();
+            out.compact();
+            if (key.isValid()) {
+                key.interestOps(written ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+            }
+            return written;
+        }
+
+        private ByteBuffer grow(ByteBuffer buffer, int capacity) throws IOException {
+            ByteBuffer grown;
+            try {
+                grown = ByteBuffer.allocateDirect(Math.max(capacity, buffer.capacity()));
+            } catch (OutOfMemoryError e) {
+                // out of direct memory for this request, the other connections keep their buffers
+                throw new IOException("No memory left for a request of " + capacity + " bytes", e);
+            }
+            buffer.flip();
+            grown.put(buffer);
+            release(buffer);
+            return grown;
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing more to do with this connection
+            }
+            if (in != null) {
+                release(in);
+                release(out);
+                in = null;
+                out = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.github.qweek;
+
+import java.util.Arrays;
+
+/**
+ * Sum of numbers appended chunk by chunk, e.g. an append-only log: {@link #current()} returns what
+ * {@link Calculator_9#add(String)} returns for all the chunks appended so far, without scanning them again.
+ * <p>
+ * The header is parsed once, partial numbers and delimiters are carried from one chunk to the next,
+ * so an append costs the length of the chunk and {@link #current()} only finishes the last partial number.
+ * Once the chunks contain an error, more chunks can't fix it: they are ignored and {@link #current()} throws.
+ * Not thread safe.
+ */
+public class CalculatorSession {
+    private final IncrementalScanner scanner;
+    // chars not consumed by the scanner yet, the start of a number or of a delimiter
+    private char[] pending = new char[16];
+    private int length;
+
+    private RuntimeException failure;
+    private Integer current;
+
+    public CalculatorSession() {
+        this(new DelimiterCache());
+    }
+
+    public CalculatorSession(DelimiterCache cache) {
+        this.scanner = new IncrementalScanner(cache);
+    }
+
+    public CalculatorSession append(CharSequence chunk) {
+        if (failure != null || chunk == null || chunk.length() == 0) {
+            return this;
+        }
+        current = null;
+
+        if (length + chunk.length() > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, length + chunk.length()));
+        }
+        if (chunk instanceof String) {
+            ((String) chunk).getChars(0, chunk.length(), pending, length);
+        } else {
+            for (int i = 0; i < chunk.length(); i++) {
+                pending[length + i] = chunk.charAt(i);
+            }
+        }
+        length += chunk.length();
+
+        try {
+            int consumed = scanner.scan(pending, 0, length);
+            System.arraycopy(pending, consumed, pending, 0, length - consumed);
+            length -= consumed;
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            failure = e;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the sum of the numbers appended so far, or throws the same exception as {@link Calculator_9#add(String)}.
+     */
+    public int current() {
+        if (failure != null) {
+            throw failure;
+        }
+        if (current == null) {
+            current = new IncrementalScanner(scanner).finish(pending, 0, length);
+        }
+        return current;
+    }
+}
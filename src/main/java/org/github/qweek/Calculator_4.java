@@ -1,9 +1,9 @@
 package org.github.qweek;
 
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Splitter;
-import com.google.common.base.Strings;
 
-import java.util.List;
+import java.nio.CharBuffer;
 import java.util.stream.Stream;
 
 import static java.lang.String.format;
@@ -11,7 +11,7 @@ import static java.util.stream.StreamSupport.stream;
 
 public class Calculator_4 implements Calculator {
     private static final String DEFAULT_DELIMITER = ",";
-    private static final Splitter DELIMITER_SPLITTER = Splitter.on('\n').limit(2);
+    private static final CharMatcher NEW_LINE = CharMatcher.is('\n');
 
     /**
      * 4. Support different delimiters.
@@ -20,30 +20,42 @@ public class Calculator_4 implements Calculator {
      */
     @Override
     public int add(String numbers) {
-        if (Strings.isNullOrEmpty(numbers)) {
+        return add((CharSequence) numbers);
+    }
+
+    /**
+     * Same as {@link #add(String)}, the header and the numbers are split in place without copying them.
+     */
+    @Override
+    public int add(CharSequence numbers, int start, int end) {
+        return numbers == null ? 0 : add(CharBuffer.wrap(numbers, start, end));
+    }
+
+    private int add(CharSequence numbers) {
+        if (numbers == null || numbers.length() == 0) {
             return 0;
         }
 
-        if (numbers.startsWith("//")) {
-            List<String> tokens = DELIMITER_SPLITTER.splitToList(numbers.substring(2));
-            String delimiter = tokens.get(0);
+        if (numbers.length() >= 2 && numbers.charAt(0) == '/' && numbers.charAt(1) == '/') {
+            int newLine = NEW_LINE.indexIn(numbers, 2);
+            String delimiter = numbers.subSequence(2, newLine < 0 ? numbers.length() : newLine).toString();
             if (delimiter.isEmpty()) {
                 throw new IllegalArgumentException("Delimiter is empty");
             }
             if (delimiter.length() > 1) {
                 throw new IllegalArgumentException("Delimiter too long");
             }
-            if (tokens.size() == 1) {
+            if (newLine < 0) {
                 return 0;
             }
-            return add(delimiter, tokens.get(1));
+            return add(delimiter, CharBuffer.wrap(numbers, newLine + 1, numbers.length()));
         }
 
         return add(DEFAULT_DELIMITER, numbers);
     }
 
-    private int add(String delimiter, String numbers) {
-        if (Strings.isNullOrEmpty(numbers)) {
+    private int add(String delimiter, CharSequence numbers) {
+        if (numbers.length() == 0) {
             return 0;
         }
         Splitter splitter = Splitter.on(delimiter);
@@ -1,20 +1,18 @@
 package org.github.qweek;
 
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Splitter;
-import com.google.common.base.Strings;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.CharBuffer;
 import java.util.function.IntPredicate;
 import java.util.stream.Stream;
 
 import static java.lang.String.format;
-import static java.lang.String.join;
 import static java.util.stream.StreamSupport.stream;
 
 public class Calculator_5 implements Calculator {
     private static final String DEFAULT_DELIMITER = ",";
-    private static final Splitter DELIMITER_SPLITTER = Splitter.on('\n').limit(2);
+    private static final CharMatcher NEW_LINE = CharMatcher.is('\n');
 
     /**
      * 5. Calling add with a negative number will throw an exception with the message “negatives not allowed” - and the negative that was passed.
@@ -22,30 +20,53 @@ public class Calculator_5 implements Calculator {
      */
     @Override
     public int add(String numbers) {
-        if (Strings.isNullOrEmpty(numbers)) {
+        return add((CharSequence) numbers);
+    }
+
+    /**
+     * Same as {@link #add(String)}, the header and the numbers are split in place without copying them.
+     */
+    @Override
+    public int add(CharSequence numbers, int start, int end) {
+        return numbers == null ? 0 : add(CharBuffer.wrap(numbers, start, end));
+    }
+
+    private int add(CharSequence numbers) {
+        if (numbers == null || numbers.length() == 0) {
             return 0;
         }
 
-        if (numbers.startsWith("//")) {
-            List<String> tokens = DELIMITER_SPLITTER.splitToList(numbers.substring(2));
-            String delimiter = tokens.get(0);
+        if (numbers.length() >= 2 && numbers.charAt(0) == '/' && numbers.charAt(1) == '/') {
+            int newLine = NEW_LINE.indexIn(numbers, 2);
+            String delimiter = numbers.subSequence(2, newLine < 0 ? numbers.length() : newLine).toString();
             if (delimiter.isEmpty()) {
                 throw new IllegalArgumentException("Delimiter is empty");
             }
             if (delimiter.length() > 1) {
                 throw new IllegalArgumentException("Delimiter too long");
             }
-            if (tokens.size() == 1) {
+            if (newLine < 0) {
                 return 0;
             }
-            return add(delimiter, tokens.get(1));
+            return add(delimiter, CharBuffer.wrap(numbers, newLine + 1, numbers.length()));
         }
 
         return add(DEFAULT_DELIMITER, numbers);
     }
 
-    private int add(String delimiter, String numbers) {
-        if (Strings.isNullOrEmpty(numbers)) {
+    /**
+     * With {@link Validation#FAIL_FAST} each token is checked as soon as it is split, the first error stops the split.
+     */
+    @Override
+    public AddResult tryAdd(String numbers, Validation validation) {
+        if (validation == Validation.COLLECT_ALL) {
+            return tryAdd(numbers);
+        }
+        return FailFast.tryAdd(numbers, delimiter -> FailFast.split(Splitter.on(delimiter), delimiter.length()), 1, Integer.MAX_VALUE);
+    }
+
+    private int add(String delimiter, CharSequence numbers) {
+        if (numbers.length() == 0) {
             return 0;
         }
         Splitter splitter = Splitter.on(delimiter);
@@ -66,21 +87,19 @@ public class Calculator_5 implements Calculator {
     }
 
     private class NegativeFilter implements IntPredicate {
-        private final List<String> negatives = new ArrayList<>();
+        private final Negatives negatives = new Negatives();
 
         @Override
         public boolean test(int value) {
             boolean negative = value < 0;
             if (negative) {
-                negatives.add(String.valueOf(value));
+                negatives.add(value);
             }
             return !negative;
         }
 
         void throwIfNegatives() {
-            if (!negatives.isEmpty()) {
-                throw new IllegalArgumentException(String.format("negatives not allowed: %s", join(",", negatives)));
-            }
+            negatives.throwIfAny();
         }
     }
 }
@@ -1,70 +1,113 @@
 package org.github.qweek;
 
 import com.google.common.base.CharMatcher;
-import com.google.common.base.Splitter;
-import com.google.common.base.Strings;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.CharBuffer;
 import java.util.function.IntPredicate;
-import java.util.regex.Pattern;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static java.lang.String.format;
-import static java.lang.String.join;
 import static java.util.stream.StreamSupport.stream;
 
 public class Calculator_9 implements Calculator {
     private static final String DEFAULT_DELIMITER = ",";
-    private static final Splitter DELIMITER_SPLITTER = Splitter.on('\n').limit(2);
+    private static final CharMatcher NEW_LINE = CharMatcher.is('\n');
+
+    private final DelimiterCache cache;
+    private final CalculatorMetrics metrics;
+
+    public Calculator_9() {
+        this(new DelimiterCache());
+    }
+
+    public Calculator_9(DelimiterCache cache) {
+        this(cache, CalculatorMetrics.disabled());
+    }
+
+    /**
+     * @param metrics records the latency of each stage and the numbers seen
+     */
+    public Calculator_9(DelimiterCache cache, CalculatorMetrics metrics) {
+        this.cache = cache;
+        this.metrics = metrics;
+    }
 
     /**
      * 9. Make sure you can also handle multiple delimiters with length longer than one character.
      */
     @Override
     public int add(String numbers) {
-        if (Strings.isNullOrEmpty(numbers)) {
+        return (int) add(numbers, this::sum);
+    }
+
+    /**
+     * Same rules as {@link #add(String)}, the numbers are summed into a long.
+     */
+    @Override
+    public long addLong(String numbers) {
+        return add(numbers, this::sumLong);
+    }
+
+    /**
+     * Same as {@link #add(String)}, the header and the numbers are split in place without copying them.
+     */
+    @Override
+    public int add(CharSequence numbers, int start, int end) {
+        return numbers == null ? 0 : (int) add(CharBuffer.wrap(numbers, start, end), this::sum);
+    }
+
+    /**
+     * With {@link Validation#FAIL_FAST} each token is checked as soon as it is split, the first error stops the split.
+     */
+    @Override
+    public AddResult tryAdd(String numbers, Validation validation) {
+        if (validation == Validation.COLLECT_ALL) {
+            return tryAdd(numbers);
+        }
+        return FailFast.tryAdd(numbers, delimiter -> FailFast.split(cache.get(delimiter)), Integer.MAX_VALUE, 1000);
+    }
+
+    private long add(CharSequence numbers, ToLongFunction<IntStream> sum) {
+        if (numbers == null || numbers.length() == 0) {
             return 0;
         }
 
-        if (numbers.startsWith("//")) {
-            List<String> tokens = DELIMITER_SPLITTER.splitToList(numbers.substring(2));
-            String delimiter = tokens.get(0);
+        if (numbers.length() >= 2 && numbers.charAt(0) == '/' && numbers.charAt(1) == '/') {
+            long start = metrics.start();
+            int newLine = NEW_LINE.indexIn(numbers, 2);
+            String delimiter = numbers.subSequence(2, newLine < 0 ? numbers.length() : newLine).toString();
+            metrics.stop(CalculatorMetrics.Stage.HEADER, start);
             if (delimiter.isEmpty()) {
                 throw new IllegalArgumentException("Delimiter is empty");
             }
-            if (tokens.size() == 1) {
+            if (newLine < 0) {
                 return 0;
             }
-            return add(delimiter, tokens.get(1));
+            return add(delimiter, CharBuffer.wrap(numbers, newLine + 1, numbers.length()), sum);
         }
 
-        return add(DEFAULT_DELIMITER, numbers);
+        return add(DEFAULT_DELIMITER, numbers, sum);
     }
 
-    private int add(String delimiter, String numbers) {
-        if (Strings.isNullOrEmpty(numbers)) {
+    private long add(String delimiter, CharSequence numbers, ToLongFunction<IntStream> sum) {
+        if (numbers.length() == 0) {
             return 0;
         }
-        Splitter splitter = splitter(delimiter);
-        Stream<String> tokens = stream(splitter.split(numbers).spliterator(), false);
+        long start = metrics.start();
+        Delimiters delimiters = cache.get(delimiter);
+        start = metrics.stop(CalculatorMetrics.Stage.DELIMITERS, start);
+        Stream<String> tokens = stream(delimiters.split(numbers).spliterator(), false);
 
         NegativeNotThousandFilter filter = new NegativeNotThousandFilter();
-        int result = sum(tokens.mapToInt(this::convert).filter(filter));
+        long result = sum.applyAsLong(tokens.mapToInt(this::convert).filter(filter));
+        metrics.stop(CalculatorMetrics.Stage.SCAN, start);
+        metrics.recordTokens(filter.tokens, filter.ignored);
         filter.throwIfNegatives();
         return result;
     }
 
-    private Splitter splitter(String value) {
-        String[] delimiters = value.split("[|]");
-        List<String> patterns = new ArrayList<>();
-        for (String delimiter : delimiters) {
-            patterns.add(Pattern.quote(delimiter));
-        }
-        String pattern = String.join("|", patterns);
-        return Splitter.on(Pattern.compile(pattern));
-    }
-
     private int convert(String number) {
         try {
             return Integer.valueOf(number);
@@ -74,21 +117,24 @@ public class Calculator_9 implements Calculator {
     }
 
     private class NegativeNotThousandFilter implements IntPredicate {
-        private final List<String> negatives = new ArrayList<>();
+        private final Negatives negatives = new Negatives();
+        private long tokens;
+        private long ignored;
 
         @Override
         public boolean test(int value) {
+            tokens++;
             boolean negative = value < 0;
             if (negative) {
-                negatives.add(String.valueOf(value));
+                negatives.add(value);
+            } else if (value > 1000) {
+                ignored++;
             }
             return !negative && value <= 1000;
         }
 
         void throwIfNegatives() {
-            if (!negatives.isEmpty()) {
-                throw new IllegalArgumentException(String.format("negatives not allowed: %s", join(",", negatives)));
-            }
+            negatives.throwIfAny();
         }
     }
 }
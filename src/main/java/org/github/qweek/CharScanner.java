@@ -0,0 +1,132 @@
+package org.github.qweek;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Splits the body of numbers on delimiters into a {@link PartialSum}, which applies the rules to each number:
+ * the tokenizer of the calculators that scan chars, on a whole region or on segments summed in parallel.
+ * <p>
+ * Segments start right after a delimiter. A boundary is searched from a char that can't be part of any delimiter:
+ * no delimiter can span it, so scanning from there finds the same next delimiter as scanning from the start.
+ */
+final class CharScanner {
+    private static final int MIN_SEGMENT = 1 << 16;
+
+    private final Delimiters delimiters;
+
+    CharScanner(Delimiters delimiters) {
+        this.delimiters = delimiters;
+    }
+
+    /**
+     * @param max the sum overflows past this value
+     */
+    PartialSum add(CharSequence chars, int from, int to, ForkJoinPool pool, long max) {
+        int segment = Math.max(MIN_SEGMENT, (to - from) / (pool.getParallelism() * 4));
+        int[] bounds = new int[(to - from) / segment + 2];
+        int count = 0;
+        bounds[count++] = from;
+        for (int cut = from + segment; cut < to; cut += segment) {
+            int boundary = boundary(chars, cut, Math.min(to, cut + segment), to);
+            if (boundary > bounds[count - 1]) {
+                bounds[count++] = boundary;
+            }
+        }
+        // if the numbers end with a delimiter, the last segment is empty and reports the empty number after it
+        bounds[count++] = to;
+        return pool.invoke(new Sum(chars, Arrays.copyOf(bounds, count), 0, count - 1, max));
+    }
+
+    /**
+     * Returns the end of the first delimiter after {@code cut}, or -1 if none starts before {@code end}.
+     */
+    private int boundary(CharSequence chars, int cut, int end, int limit) {
+        int from = cut;
+        while (from < end && delimiters.contains(chars.charAt(from - 1))) {
+            from++;
+        }
+        if (delimiters.contains(chars.charAt(from - 1))) {
+            return -1;
+        }
+        for (int i = from; i < end; i++) {
+            int length = delimiters.match(chars, i, limit);
+            if (length > 0) {
+                return i + length;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Scans {@code chars[from..to)}, a region that starts at the beginning of a number and, if not {@code last},
+     * ends right after a delimiter, into the partial sum that applies the rules to the numbers.
+     * Stops at the first invalid number, or when the partial sum can stop.
+     */
+    static PartialSum scan(Delimiters delimiters, CharSequence chars, int from, int to, boolean last, PartialSum partial) {
+        // single ascii char delimiters, like the default ",", are checked against a bit mask instead of the trie,
+        // the condition doesn't change in the loop so the JIT compiles a loop specialized for each case
+        boolean ascii = delimiters.isAsciiChars();
+        long low = delimiters.asciiMask(0);
+        long high = delimiters.asciiMask(1);
+        NumberParser number = new NumberParser();
+        int start = from;
+
+        int i = from;
+        while (true) {
+            char c = i < to ? chars.charAt(i) : 0;
+            int delimiter = i == to ? 0 : ascii ? Delimiters.match(low, high, c) : delimiters.match(chars, i, to);
+            if (delimiter > 0 || i == to && last) {
+                if (!number.isNumber()) {
+                    partial.invalid(chars.subSequence(start, i).toString(), start);
+                    return partial;
+                }
+                if (!partial.add(number.value(), start)) {
+                    return partial;
+                }
+            }
+            if (i == to) {
+                return partial;
+            }
+            if (delimiter > 0) {
+                i += delimiter;
+                start = i;
+                number.reset();
+                continue;
+            }
+            number.append(c);
+            i++;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class Sum extends RecursiveTask<PartialSum> {
+        private final CharSequence chars;
+        private final int[] bounds;
+        private final int from;
+        private final int to;
+        private final long max;
+
+        private Sum(CharSequence chars, int[] bounds, int from, int to, long max) {
+            this.chars = chars;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+            this.max = max;
+        }
+
+        @Override
+        protected PartialSum compute() {
+            if (to - from == 1) {
+                return scan(delimiters, chars, bounds[from], bounds[to], to == bounds.length - 1, new PartialSum(max, false));
+            }
+
+            int middle = (from + to) >>> 1;
+            Sum left = new Sum(chars, bounds, from, middle, max);
+            left.fork();
+            PartialSum right = new Sum(chars, bounds, middle, to, max).compute();
+            return left.join().combine(right);
+        }
+    }
+}
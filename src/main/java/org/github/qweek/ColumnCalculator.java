@@ -0,0 +1,256 @@
+package org.github.qweek;
+
+import com.google.common.base.Strings;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Sums rows of numbers per column in a single pass, with the rules of {@link Calculator_9} for each cell:
+ * invalid numbers and negatives are rejected, numbers bigger than 1000 are ignored.
+ * <p>
+ * The header of {@link Calculator_9} declares the column delimiters, and can be followed by a second header
+ * declaring the row delimiters, e.g. "//;\n//#\n1;2#3;4" sums to [4, 6]. Columns are delimited by "," and rows by "\n"
+ * or "\r\n" by default, the input can end with a row delimiter. Rows may have different numbers of columns.
+ */
+public class ColumnCalculator {
+    static final Delimiters DEFAULT_ROWS = Delimiters.of("\n", "\n", "\r\n");
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MIN_SEGMENT = 1 << 16;
+    private static final int NO_ROWS = -1;
+    private static final int INCOMPLETE = -2;
+
+    private final DelimiterCache cache;
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+
+    public ColumnCalculator() {
+        this(new DelimiterCache());
+    }
+
+    public ColumnCalculator(DelimiterCache cache) {
+        this(cache, ForkJoinPool.commonPool(), ScannerCalculator.DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param parallelThreshold rows of at least this length are split and summed in parallel on the pool
+     */
+    public ColumnCalculator(DelimiterCache cache, ForkJoinPool pool, int parallelThreshold) {
+        this.cache = cache;
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Returns the sum of each column, empty if there are no rows.
+     */
+    public long[] add(String numbers) {
+        if (Strings.isNullOrEmpty(numbers)) {
+            return new long[0];
+        }
+        Layout layout = layout(numbers, numbers.length(), true);
+        int from = layout.body;
+        if (from == NO_ROWS || from == numbers.length()) {
+            return new long[0];
+        }
+        if (numbers.length() - from >= parallelThreshold && pool.getParallelism() > 1) {
+            return add(numbers, from, layout).result();
+        }
+        ColumnScanner scanner = new ColumnScanner(layout.rows, layout.columns, false);
+        scanner.scan(numbers, from, numbers.length(), true);
+        return scanner.result();
+    }
+
+    /**
+     * Same as {@link #add(String)}, the rows are read through a buffer and never held in memory as a whole,
+     * only the sums of the columns and the longest cell are.
+     */
+    public long[] add(Reader numbers) throws IOException {
+        if (numbers == null) {
+            return new long[0];
+        }
+
+        char[] buffer = new char[BUFFER_SIZE];
+        int length = 0;
+        boolean end = false;
+        Layout layout;
+        while ((layout = layout(CharBuffer.wrap(buffer, 0, length), length, end)).body == INCOMPLETE) {
+            if (length == buffer.length) {
+                // a header longer than the buffer
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int read = numbers.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                end = true;
+            } else {
+                length += read;
+            }
+        }
+        int from = layout.body;
+        if (from == NO_ROWS) {
+            return new long[0];
+        }
+
+        ColumnScanner scanner = new ColumnScanner(layout.rows, layout.columns, false);
+        boolean empty = true;
+        while (!scanner.isDone()) {
+            empty &= from == length;
+            if (end) {
+                if (empty) {
+                    return new long[0];
+                }
+                scanner.scan(CharBuffer.wrap(buffer, 0, length), from, length, true);
+                break;
+            }
+            from = scanner.scan(CharBuffer.wrap(buffer, 0, length), from, length, false);
+            System.arraycopy(buffer, from, buffer, 0, length - from);
+            length -= from;
+            from = 0;
+            if (length == buffer.length) {
+                // a cell longer than the buffer
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int read = numbers.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                end = true;
+            } else {
+                length += read;
+            }
+        }
+        return scanner.result();
+    }
+
+    /**
+     * Parses the headers in {@code chars[0..length)}, the body is {@link #INCOMPLETE} if more chars are needed
+     * and the input is not {@code complete}.
+     */
+    private Layout layout(CharSequence chars, int length, boolean complete) {
+        Layout layout = new Layout();
+        layout.columns = Delimiters.DEFAULT;
+        layout.rows = DEFAULT_ROWS;
+        int from = 0;
+        for (int header = 0; header < 2; header++) {
+            if (length - from < 2 && !complete) {
+                layout.body = INCOMPLETE;
+                return layout;
+            }
+            if (length - from < 2 || chars.charAt(from) != '/' || chars.charAt(from + 1) != '/') {
+                break;
+            }
+            int newLine = from + 2;
+            while (newLine < length && chars.charAt(newLine) != '\n') {
+                newLine++;
+            }
+            if (newLine == length && !complete) {
+                layout.body = INCOMPLETE;
+                return layout;
+            }
+            if (newLine == from + 2) {
+                throw new IllegalArgumentException("Delimiter is empty");
+            }
+            if (newLine == length) {
+                layout.body = NO_ROWS;
+                return layout;
+            }
+            Delimiters delimiters = cache.get(chars.subSequence(from + 2, newLine).toString());
+            if (header == 0) {
+                layout.columns = delimiters;
+            } else {
+                layout.rows = delimiters;
+            }
+            from = newLine + 1;
+        }
+        layout.body = from;
+        return layout;
+    }
+
+    private ColumnScanner add(CharSequence chars, int from, Layout layout) {
+        int to = chars.length();
+        int segment = Math.max(MIN_SEGMENT, (to - from) / (pool.getParallelism() * 4));
+        int[] bounds = new int[(to - from) / segment + 2];
+        int count = 0;
+        bounds[count++] = from;
+        for (int cut = from + segment; cut < to; cut += segment) {
+            int boundary = boundary(chars, layout, cut, Math.min(to, cut + segment));
+            if (boundary > bounds[count - 1]) {
+                bounds[count++] = boundary;
+            }
+        }
+        if (bounds[count - 1] < to) {
+            bounds[count++] = to;
+        }
+        return pool.invoke(new Sum(chars, layout, Arrays.copyOf(bounds, count), 0, count - 1));
+    }
+
+    /**
+     * Returns the end of the first row delimiter after {@code cut}, or -1 if none starts before {@code end}.
+     * The search starts from a char that can't be part of any delimiter, so it finds the same delimiters as a full scan.
+     */
+    private static int boundary(CharSequence chars, Layout layout, int cut, int end) {
+        int from = cut;
+        while (from < end && contains(layout, chars.charAt(from - 1))) {
+            from++;
+        }
+        if (contains(layout, chars.charAt(from - 1))) {
+            return -1;
+        }
+        int limit = chars.length();
+        for (int i = from; i < end; ) {
+            int row = layout.rows.match(chars, i, limit);
+            int column = layout.columns.match(chars, i, limit);
+            if (row > 0 && row >= column) {
+                return i + row;
+            }
+            i += Math.max(1, column);
+        }
+        return -1;
+    }
+
+    private static boolean contains(Layout layout, char c) {
+        return layout.rows.contains(c) || layout.columns.contains(c);
+    }
+
+    private static final class Layout {
+        private Delimiters columns;
+        private Delimiters rows;
+        private int body;
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Sum extends RecursiveTask<ColumnScanner> {
+        private final CharSequence chars;
+        private final Layout layout;
+        private final int[] bounds;
+        private final int from;
+        private final int to;
+
+        private Sum(CharSequence chars, Layout layout, int[] bounds, int from, int to) {
+            this.chars = chars;
+            this.layout = layout;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ColumnScanner compute() {
+            if (to - from == 1) {
+                // every segment but the first starts right after a row delimiter and ends after one or at the end
+                ColumnScanner scanner = new ColumnScanner(layout.rows, layout.columns, from > 0);
+                scanner.scan(chars, bounds[from], bounds[to], true);
+                return scanner;
+            }
+
+            int middle = (from + to) >>> 1;
+            Sum left = new Sum(chars, layout, bounds, from, middle);
+            left.fork();
+            ColumnScanner right = new Sum(chars, layout, bounds, middle, to).compute();
+            return left.join().combine(right);
+        }
+    }
+}
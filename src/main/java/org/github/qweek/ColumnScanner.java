@@ -0,0 +1,144 @@
+package org.github.qweek;
+
+import java.util.Arrays;
+
+import static java.lang.String.format;
+
+/**
+ * Sums the cells of rows into a sum per column, with the rules of {@link Calculator_9} for each cell.
+ * <p>
+ * The input can be scanned in pieces: {@link #scan} stops before the cell it can't finish and the next piece starts there.
+ * Results of consecutive regions starting on a row are combined in order, like {@link PartialSum}.
+ */
+final class ColumnScanner {
+    private final Delimiters rows;
+    private final Delimiters columns;
+    private final int maxLength;
+    // chars of the delimiters below 128, anything else is checked with the alphabets
+    private final long low;
+    private final long high;
+
+    private long[] sums = new long[8];
+    private int width;
+    private int column;
+    private boolean afterRow;
+    private String invalid;
+    private final Negatives negatives = new Negatives();
+    private final NumberParser number = new NumberParser();
+
+    /**
+     * @param afterRow the scan starts right after a row delimiter
+     */
+    ColumnScanner(Delimiters rows, Delimiters columns, boolean afterRow) {
+        this.rows = rows;
+        this.columns = columns;
+        this.maxLength = Math.max(rows.maxLength(), columns.maxLength());
+        this.low = rows.asciiMask(0) | columns.asciiMask(0);
+        this.high = rows.asciiMask(1) | columns.asciiMask(1);
+        this.afterRow = afterRow;
+    }
+
+    /**
+     * Scans {@code chars[from..to)}, where a cell starts, and returns the start of the first cell not scanned.
+     * Unless {@code last}, a cell is only scanned if the delimiter after it is found before {@code to}.
+     * The last cell is skipped if it is an empty row, so the input can end with a row delimiter.
+     * Stops at the first invalid number.
+     */
+    int scan(CharSequence chars, int from, int to, boolean last) {
+        int start = from;
+        number.reset();
+
+        int i = from;
+        while (invalid == null) {
+            if (i == to && last) {
+                if (column > 0 || !afterRow || start < to) {
+                    cell(chars, start, to);
+                }
+                return to;
+            }
+            if (!last && i > to - maxLength) {
+                return start;
+            }
+
+            char c = chars.charAt(i);
+            boolean plain = c < 128 ? Delimiters.match(low, high, c) == 0 : !rows.contains(c) && !columns.contains(c);
+            if (!plain) {
+                int row = rows.match(chars, i, to);
+                int cell = columns.match(chars, i, to);
+                if (row > 0 || cell > 0) {
+                    cell(chars, start, i);
+                    // the longest delimiter wins, a row if both have the same length
+                    if (row >= cell) {
+                        column = 0;
+                        afterRow = true;
+                        i += row;
+                    } else {
+                        column++;
+                        i += cell;
+                    }
+                    start = i;
+                    number.reset();
+                    continue;
+                }
+            }
+
+            number.append(c);
+            i++;
+        }
+        return to;
+    }
+
+    private void cell(CharSequence chars, int start, int end) {
+        if (!number.isNumber()) {
+            invalid = chars.subSequence(start, end).toString();
+            return;
+        }
+        if (column >= sums.length) {
+            sums = Arrays.copyOf(sums, Math.max(sums.length * 2, column + 1));
+        }
+        width = Math.max(width, column + 1);
+        int value = number.value();
+        if (value < 0) {
+            negatives.add(value);
+        } else if (value <= 1000) {
+            sums[column] += value;
+        }
+    }
+
+    /**
+     * Returns true once an invalid number is found, the rest of the input doesn't change the result.
+     */
+    boolean isDone() {
+        return invalid != null;
+    }
+
+    /**
+     * Appends the results of the region that follows this one.
+     */
+    ColumnScanner combine(ColumnScanner next) {
+        if (invalid != null) {
+            return this;
+        }
+        if (next.width > sums.length) {
+            sums = Arrays.copyOf(sums, next.width);
+        }
+        for (int i = 0; i < next.width; i++) {
+            sums[i] += next.sums[i];
+        }
+        width = Math.max(width, next.width);
+        invalid = next.invalid;
+        negatives.addAll(next.negatives);
+        return this;
+    }
+
+    /**
+     * Returns the sums of the columns, or throws the same exception as {@link Calculator_9} for the cells.
+     */
+    long[] result() {
+        if (invalid != null) {
+            throw new IllegalArgumentException(format("Invalid number: '%s'", invalid));
+        }
+        negatives.throwIfAny();
+        return Arrays.copyOf(sums, width);
+    }
+}
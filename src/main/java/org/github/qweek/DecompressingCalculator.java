@@ -0,0 +1,312 @@
+package org.github.qweek;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.CodingErrorAction;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Sums compressed UTF-8 numbers with the rules of {@link Calculator_9}, decompressing and parsing at the same time.
+ * <p>
+ * A task on the executor inflates and decodes the stream into a ring of {@code buffers} reusable buffers
+ * of {@code bufferSize} chars, the calling thread parses the filled buffers and hands them back.
+ * Malformed bytes are replaced as by {@code new String(bytes, UTF_8)}. The stream is not closed.
+ * <p>
+ * The time each stage is busy or waiting for the other one is summed over all calls, see {@link #getDecompressThroughput()}
+ * and {@link #getParseThroughput()}: the stage that waits less is the bottleneck.
+ */
+public class DecompressingCalculator {
+    public enum Compression {
+        /** A gzip file, like {@link GZIPInputStream}. */
+        GZIP,
+        /** A zlib stream, like {@link java.util.zip.DeflaterOutputStream} writes by default. */
+        ZLIB,
+        /** Raw deflate data without header nor checksum. */
+        DEFLATE
+    }
+
+    public static final int DEFAULT_BUFFERS = 4;
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+    // room in front of each buffer for the chars of a delimiter cut by the end of the previous buffer
+    private static final int HEADROOM = 64;
+
+    private final DelimiterCache cache;
+    private final Executor executor;
+    private final int buffers;
+    private final int bufferSize;
+
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder decompressedBytes = new LongAdder();
+    private final LongAdder decompressNanos = new LongAdder();
+    private final LongAdder decompressWaitNanos = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder parseWaitNanos = new LongAdder();
+
+    /**
+     * Decompresses each stream on a new daemon thread.
+     */
+    public DecompressingCalculator() {
+        this(new DelimiterCache(), DecompressingCalculator::start, DEFAULT_BUFFERS, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param executor runs the decompression of each stream, which blocks while all the buffers are filled
+     */
+    public DecompressingCalculator(DelimiterCache cache, Executor executor, int buffers, int bufferSize) {
+        if (buffers <= 0 || bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffers must be positive: " + buffers + " of " + bufferSize);
+        }
+        this.cache = Objects.requireNonNull(cache);
+        this.executor = Objects.requireNonNull(executor);
+        this.buffers = buffers;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Same as {@link Calculator#add(String)} for the decompressed numbers, 0 if the stream is null.
+     * An error of the numbers stops the decompression, which is done when this method returns.
+     */
+    public int add(InputStream compressed, Compression compression) throws IOException {
+        if (compressed == null) {
+            return 0;
+        }
+
+        Ring ring = new Ring(buffers, bufferSize);
+        executor.execute(() -> decompress(compressed, compression, ring));
+        IncrementalScanner scanner = new IncrementalScanner(cache);
+        char[] carry = new char[HEADROOM];
+        int carried = 0;
+        try {
+            while (true) {
+                long wait = System.nanoTime();
+                Chunk chunk = Uninterruptibles.takeUninterruptibly(ring.filled);
+                long start = System.nanoTime();
+                parseWaitNanos.add(start - wait);
+                if (chunk.failure != null) {
+                    Throwables.throwIfInstanceOf(chunk.failure, IOException.class);
+                    Throwables.throwIfUnchecked(chunk.failure);
+                    throw new IOException(chunk.failure);
+                }
+                if (chunk.length < 0) {
+                    int result = scanner.finish(carry, 0, carried);
+                    parseNanos.add(System.nanoTime() - start);
+                    return result;
+                }
+
+                char[] chars = chunk.chars;
+                int from = HEADROOM - carried;
+                int to = HEADROOM + chunk.length;
+                if (from < 0) {
+                    // a delimiter longer than the headroom
+                    chars = new char[carried + chunk.length];
+                    System.arraycopy(chunk.chars, HEADROOM, chars, carried, chunk.length);
+                    from = 0;
+                    to = chars.length;
+                }
+                System.arraycopy(carry, 0, chars, from, carried);
+                int consumed = scanner.scan(chars, from, to);
+                carried = to - consumed;
+                if (carried > carry.length) {
+                    carry = new char[carried];
+                }
+                System.arraycopy(chars, consumed, carry, 0, carried);
+                ring.free.add(chunk);
+                parseNanos.add(System.nanoTime() - start);
+            }
+        } finally {
+            ring.close();
+        }
+    }
+
+    /**
+     * Compressed bytes read from the streams, including the ones read ahead by the inflater.
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    public long getDecompressedBytes() {
+        return decompressedBytes.sum();
+    }
+
+    /**
+     * Time spent inflating and decoding into the buffers.
+     */
+    public long getDecompressNanos() {
+        return decompressNanos.sum();
+    }
+
+    /**
+     * Time the decompression waited for a buffer to be parsed.
+     */
+    public long getDecompressWaitNanos() {
+        return decompressWaitNanos.sum();
+    }
+
+    /**
+     * Time spent parsing the buffers.
+     */
+    public long getParseNanos() {
+        return parseNanos.sum();
+    }
+
+    /**
+     * Time the parsing waited for a buffer to be filled.
+     */
+    public long getParseWaitNanos() {
+        return parseWaitNanos.sum();
+    }
+
+    /**
+     * Decompressed bytes per second of decompression, 0 before the first call.
+     */
+    public double getDecompressThroughput() {
+        return throughput(getDecompressNanos());
+    }
+
+    /**
+     * Decompressed bytes per second of parsing, 0 before the first call.
+     */
+    public double getParseThroughput() {
+        return throughput(getParseNanos());
+    }
+
+    private double throughput(long nanos) {
+        return nanos == 0 ? 0 : getDecompressedBytes() * 1e9 / nanos;
+    }
+
+    private void decompress(InputStream compressed, Compression compression, Ring ring) {
+        CountingInputStream input = new CountingInputStream(new FilterInputStream(compressed) {
+            @Override
+            public void close() {
+                // the stream belongs to the caller
+            }
+        });
+        CountingInputStream output = null;
+        Inflater inflater = null;
+        Chunk chunk = null;
+        try {
+            InputStream inflated;
+            if (compression == Compression.GZIP) {
+                inflated = new GZIPInputStream(input, bufferSize);
+            } else {
+                inflater = new Inflater(compression == Compression.DEFLATE);
+                inflated = new InflaterInputStream(input, inflater, bufferSize);
+            }
+            output = new CountingInputStream(inflated);
+            try (Reader reader = new InputStreamReader(output, UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE))) {
+                while (!ring.closed) {
+                    long wait = System.nanoTime();
+                    chunk = Uninterruptibles.takeUninterruptibly(ring.free);
+                    long start = System.nanoTime();
+                    decompressWaitNanos.add(start - wait);
+                    if (ring.closed) {
+                        break;
+                    }
+                    chunk.length = fill(reader, chunk.chars);
+                    decompressNanos.add(System.nanoTime() - start);
+                    ring.filled.add(chunk);
+                    if (chunk.length < 0) {
+                        break;
+                    }
+                    chunk = null;
+                }
+            }
+        } catch (Throwable e) {
+            if (chunk == null) {
+                chunk = new Chunk(0);
+            }
+            chunk.failure = e;
+            ring.filled.offer(chunk);
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+            compressedBytes.add(input.getCount());
+            if (output != null) {
+                decompressedBytes.add(output.getCount());
+            }
+            ring.done.countDown();
+        }
+    }
+
+    /**
+     * Reads chars after the headroom until the buffer is full, returns how many or -1 at the end of the stream.
+     */
+    private static int fill(Reader reader, char[] chars) throws IOException {
+        int length = 0;
+        while (HEADROOM + length < chars.length) {
+            int read = reader.read(chars, HEADROOM + length, chars.length - HEADROOM - length);
+            if (read < 0) {
+                return length == 0 ? -1 : length;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    private static void start(Runnable runnable) {
+        Thread thread = new Thread(runnable, "calculator-decompress");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static final class Chunk {
+        private final char[] chars;
+        private int length;
+        private Throwable failure;
+
+        private Chunk(int size) {
+            this.chars = new char[HEADROOM + size];
+        }
+    }
+
+    /**
+     * Buffers go from {@link #free} to the decompression, to {@link #filled}, to the parsing and back to {@link #free}.
+     * Both queues can hold all the buffers, so adding never blocks.
+     */
+    private static final class Ring {
+        private final BlockingQueue<Chunk> free;
+        private final BlockingQueue<Chunk> filled;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean closed;
+
+        private Ring(int buffers, int bufferSize) {
+            this.free = new ArrayBlockingQueue<>(buffers);
+            this.filled = new ArrayBlockingQueue<>(buffers + 1);
+            for (int i = 0; i < buffers; i++) {
+                free.add(new Chunk(bufferSize));
+            }
+        }
+
+        /**
+         * Stops the decompression and waits until it is done with the stream.
+         */
+        private void close() {
+            closed = true;
+            // wakes up the decompression if it waits for a buffer, even if the parsing kept the last one
+            filled.drainTo(free);
+            free.offer(new Chunk(0));
+            Uninterruptibles.awaitUninterruptibly(done);
+        }
+    }
+}
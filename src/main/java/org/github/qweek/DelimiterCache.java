@@ -0,0 +1,76 @@
+package org.github.qweek;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread safe cache of compiled delimiters keyed by the raw header text, e.g. "***|%%" for "//***|%%\n".
+ * The size is bounded and the least recently used headers are evicted first,
+ * so clients sending unique headers can't grow the heap without limit.
+ */
+public class DelimiterCache {
+    public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+    // records the compilations as Flight Recorder events when built and run on JDK 11 or later
+    private static final UnaryOperator<Function<String, Delimiters>> EVENTS = events();
+
+    private final LoadingCache<String, Delimiters> cache;
+
+    public DelimiterCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public DelimiterCache(int maximumSize) {
+        this(maximumSize, Delimiters::compile);
+    }
+
+    /**
+     * @param compiler compiles the raw header text, throws {@link IllegalArgumentException} if it is invalid
+     */
+    DelimiterCache(int maximumSize, Function<String, Delimiters> compiler) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build(CacheLoader.from(EVENTS.apply(compiler)::apply));
+    }
+
+    Delimiters get(String header) {
+        try {
+            return cache.getUnchecked(header);
+        } catch (UncheckedExecutionException e) {
+            // invalid headers are not cached, rethrow the original IllegalArgumentException
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static UnaryOperator<Function<String, Delimiters>> events() {
+        try {
+            return (UnaryOperator<Function<String, Delimiters>>) Class.forName(DelimiterCache.class.getPackage().getName() + ".CalculatorEvents")
+                    .getDeclaredField("COMPILER")
+                    .get(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // built without the jfr profile
+            return UnaryOperator.identity();
+        }
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Hit, miss and eviction counters.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,298 @@
+package org.github.qweek;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Delimiters declared by a "//delim1|delim2\n" header, parsed once and compiled into a trie.
+ * <p>
+ * A single walk from a position finds the longest delimiter starting there, so overlapping delimiters
+ * like "*" and "**" prefer "**", and the cost depends on the length of the delimiters, not on their number.
+ * <p>
+ * The delimiters are compiled twice: as chars, and as UTF-8 bytes to scan encoded input without decoding it.
+ * In valid UTF-8 an encoded delimiter can only match at the start of an encoded char, so both give the same tokens.
+ */
+final class Delimiters {
+    static final Delimiters DEFAULT = compile(",");
+
+    private final String header;
+    private final int count;
+    private final int maxLength;
+    private final int maxByteLength;
+    private final Trie chars;
+    private final Trie bytes;
+    // chars and encoded bytes found in the delimiters, anything else can't be part of a delimiter
+    private final char[] alphabet;
+    private final long[] byteAlphabet = new long[4];
+
+    private Delimiters(String header, String[] delimiters) {
+        this.header = header;
+        this.count = delimiters.length;
+
+        int[][] chars = new int[delimiters.length][];
+        int[][] bytes = new int[delimiters.length][];
+        int maxLength = 0;
+        int maxByteLength = 0;
+        for (int i = 0; i < delimiters.length; i++) {
+            chars[i] = delimiters[i].chars().toArray();
+            byte[] encoded = delimiters[i].getBytes(UTF_8);
+            bytes[i] = new int[encoded.length];
+            for (int j = 0; j < encoded.length; j++) {
+                bytes[i][j] = encoded[j] & 0xFF;
+                byteAlphabet[bytes[i][j] >>> 6] |= 1L << bytes[i][j];
+            }
+            maxLength = Math.max(maxLength, chars[i].length);
+            maxByteLength = Math.max(maxByteLength, bytes[i].length);
+        }
+        this.alphabet = String.join("", delimiters).toCharArray();
+        Arrays.sort(alphabet);
+        this.maxLength = maxLength;
+        this.maxByteLength = maxByteLength;
+        this.chars = new Trie(chars, 128);
+        this.bytes = new Trie(bytes, 256);
+    }
+
+    /**
+     * Compiles a header split like {@code header.split("[|]")}: trailing separators are dropped, any other empty delimiter is rejected.
+     */
+    static Delimiters compile(String header) {
+        String[] delimiters = header.split("[|]");
+        if (delimiters.length == 0) {
+            throw new IllegalArgumentException("Delimiter is empty");
+        }
+        for (String delimiter : delimiters) {
+            if (delimiter.isEmpty()) {
+                throw new IllegalArgumentException("Delimiter is empty");
+            }
+        }
+        return new Delimiters(header, delimiters);
+    }
+
+    /**
+     * Compiles delimiters declared by a header with other rules, none of them can be empty.
+     */
+    static Delimiters of(String header, String... delimiters) {
+        return new Delimiters(header, delimiters);
+    }
+
+    String header() {
+        return header;
+    }
+
+    int count() {
+        return count;
+    }
+
+    int maxLength() {
+        return maxLength;
+    }
+
+    int maxByteLength() {
+        return maxByteLength;
+    }
+
+    /**
+     * Returns true if every delimiter is a single ascii char: {@link #match(long, long, char)} can be used instead of a trie walk.
+     */
+    boolean isAsciiChars() {
+        return maxByteLength == 1;
+    }
+
+    /**
+     * Bits of the ascii delimiters, chars 0 to 63 for {@code half} 0 and 64 to 127 for {@code half} 1.
+     */
+    long asciiMask(int half) {
+        return byteAlphabet[half];
+    }
+
+    /**
+     * Returns 1 if {@code c} is one of the single ascii char delimiters of the masks, or 0.
+     */
+    static int match(long low, long high, char c) {
+        return c < 64 ? (int) (low >>> c) & 1 : c < 128 ? (int) (high >>> c) & 1 : 0;
+    }
+
+    boolean contains(char value) {
+        return Arrays.binarySearch(alphabet, value) >= 0;
+    }
+
+    boolean contains(byte value) {
+        int unsigned = value & 0xFF;
+        return (byteAlphabet[unsigned >>> 6] & 1L << unsigned) != 0;
+    }
+
+    /**
+     * Returns the length of the longest delimiter found at {@code chars[index]}, looking no further than {@code end}, or 0.
+     */
+    int match(CharSequence chars, int index, int end) {
+        int state = this.chars.first(chars.charAt(index));
+        if (state <= 0) {
+            return 0;
+        }
+
+        int length = this.chars.terminal[state] ? 1 : 0;
+        for (int i = index + 1; i < end; i++) {
+            state = this.chars.next(state, chars.charAt(i));
+            if (state < 0) {
+                break;
+            }
+            if (this.chars.terminal[state]) {
+                length = i - index + 1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns the length of the longest delimiter found at {@code chars[index]}, looking no further than {@code end}, or 0.
+     */
+    int match(char[] chars, int index, int end) {
+        int state = this.chars.first(chars[index]);
+        if (state <= 0) {
+            return 0;
+        }
+
+        int length = this.chars.terminal[state] ? 1 : 0;
+        for (int i = index + 1; i < end; i++) {
+            state = this.chars.next(state, chars[i]);
+            if (state < 0) {
+                break;
+            }
+            if (this.chars.terminal[state]) {
+                length = i - index + 1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns the length in bytes of the longest encoded delimiter found at {@code bytes.get(index)}, looking no further than {@code end}, or 0.
+     */
+    int match(ByteBuffer bytes, int index, int end) {
+        int state = this.bytes.first(bytes.get(index) & 0xFF);
+        if (state <= 0) {
+            return 0;
+        }
+
+        int length = this.bytes.terminal[state] ? 1 : 0;
+        for (int i = index + 1; i < end; i++) {
+            state = this.bytes.next(state, bytes.get(i) & 0xFF);
+            if (state < 0) {
+                break;
+            }
+            if (this.bytes.terminal[state]) {
+                length = i - index + 1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Splits like a Guava {@code Splitter} on these delimiters: empty tokens are kept.
+     */
+    Iterable<String> split(CharSequence chars) {
+        return () -> new AbstractIterator<String>() {
+            private int start = 0;
+
+            @Override
+            protected String computeNext() {
+                if (start > chars.length()) {
+                    return endOfData();
+                }
+                for (int i = start; i < chars.length(); i++) {
+                    int length = match(chars, i, chars.length());
+                    if (length > 0) {
+                        String token = chars.subSequence(start, i).toString();
+                        start = i + length;
+                        return token;
+                    }
+                }
+                String token = chars.subSequence(start, chars.length()).toString();
+                start = chars.length() + 1;
+                return token;
+            }
+        };
+    }
+
+    /**
+     * Trie over chars or unsigned bytes, state 0 is the root.
+     */
+    private static final class Trie {
+        // transitions from the root for small symbols, 0 if none
+        private final int[] root;
+        // transitions of state s are labels[offsets[s]..offsets[s + 1]) to targets[...], labels are sorted
+        private final int[] offsets;
+        private final char[] labels;
+        private final int[] targets;
+        private final boolean[] terminal;
+
+        private Trie(int[][] sequences, int direct) {
+            Node trie = new Node();
+            for (int[] sequence : sequences) {
+                Node node = trie;
+                for (int symbol : sequence) {
+                    node = node.children.computeIfAbsent((char) symbol, c -> new Node());
+                }
+                node.terminal = true;
+            }
+
+            // number the nodes breadth first, children of a node get consecutive transitions
+            List<Node> nodes = new ArrayList<>();
+            Deque<Node> queue = new ArrayDeque<>();
+            queue.add(trie);
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                node.state = nodes.size();
+                nodes.add(node);
+                queue.addAll(node.children.values());
+            }
+
+            offsets = new int[nodes.size() + 1];
+            labels = new char[nodes.size() - 1];
+            targets = new int[nodes.size() - 1];
+            terminal = new boolean[nodes.size()];
+            int transition = 0;
+            for (Node node : nodes) {
+                offsets[node.state] = transition;
+                terminal[node.state] = node.terminal;
+                for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+                    labels[transition] = child.getKey();
+                    targets[transition++] = child.getValue().state;
+                }
+            }
+            offsets[nodes.size()] = transition;
+
+            root = new int[direct];
+            for (Map.Entry<Character, Node> child : trie.children.entrySet()) {
+                if (child.getKey() < direct) {
+                    root[child.getKey()] = child.getValue().state;
+                }
+            }
+        }
+
+        private int first(int symbol) {
+            return symbol < root.length ? root[symbol] : next(0, symbol);
+        }
+
+        private int next(int state, int symbol) {
+            int index = Arrays.binarySearch(labels, offsets[state], offsets[state + 1], (char) symbol);
+            return index < 0 ? -1 : targets[index];
+        }
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new TreeMap<>();
+        private boolean terminal;
+        private int state;
+    }
+}
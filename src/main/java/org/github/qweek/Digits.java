@@ -0,0 +1,54 @@
+package org.github.qweek;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Parses ascii digits 8 bytes at a time, SIMD within a register: the bytes are loaded into a long,
+ * checked for digits with masks and converted with 3 multiply-shift steps instead of 8 multiply-add.
+ */
+final class Digits {
+    private static final long ZEROS = 0x3030303030303030L;
+    private static final long HIGH_NIBBLES = 0xF0F0F0F0F0F0F0F0L;
+    private static final long SIXES = 0x0606060606060606L;
+    private static final long[] POWERS = {1, 10, 100, 1000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000};
+
+    private Digits() {
+    }
+
+    /**
+     * Returns the 8 bytes at {@code index} with the first byte in the lowest bits, whatever the order of the buffer.
+     */
+    static long word(ByteBuffer bytes, int index) {
+        long word = bytes.getLong(index);
+        return bytes.order() == ByteOrder.LITTLE_ENDIAN ? word : Long.reverseBytes(word);
+    }
+
+    /**
+     * Returns how many bytes of the word are digits before the first other byte, from 0 to 8.
+     */
+    static int leading(long word) {
+        // a byte is a digit if its high nibble is 3 and stays 3 once 6 is added to the low nibble,
+        // a carry can only come from a byte that is not a digit and only spoils the bytes after it
+        long other = (word & HIGH_NIBBLES ^ ZEROS) | ((word + SIXES) & HIGH_NIBBLES ^ ZEROS);
+        return Long.numberOfTrailingZeros(other) >>> 3;
+    }
+
+    /**
+     * Returns the value of the first {@code count} bytes of the word, all digits, {@code count} from 1 to 8.
+     */
+    static int parse(long word, int count) {
+        // the digits are moved to the last bytes, the first ones become leading zeros
+        long digits = (word - ZEROS) << (8 - count << 3);
+        digits = digits * 10 + (digits >>> 8) & 0x00FF00FF00FF00FFL;
+        digits = digits * 100 + (digits >>> 16) & 0x0000FFFF0000FFFFL;
+        return (int) (digits * 10000 + (digits >>> 32));
+    }
+
+    /**
+     * Returns 10 to the power of {@code exponent}, from 0 to 8.
+     */
+    static long power(int exponent) {
+        return POWERS[exponent];
+    }
+}
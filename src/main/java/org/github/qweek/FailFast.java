@@ -0,0 +1,135 @@
+package org.github.qweek;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+
+import java.nio.CharBuffer;
+import java.util.function.Function;
+
+/**
+ * Sums the tokens of the stream calculators with {@link Calculator.Validation#FAIL_FAST}:
+ * the tokens are checked one by one and the first negative, invalid number or overflow is returned with its offset,
+ * the tokens after it are never split.
+ * <p>
+ * The header is read the same way for all of them, they only differ in how a declared delimiter splits the numbers,
+ * see {@link Split}.
+ */
+final class FailFast {
+    private static final String DEFAULT_DELIMITER = ",";
+
+    /**
+     * How the numbers are split on a delimiter declared by the header, or the default ",".
+     */
+    interface Split {
+        /**
+         * Splits the numbers after the header, lazily.
+         */
+        Iterable<String> tokens(CharSequence body);
+
+        /**
+         * Returns the length of the delimiter found at an offset of the numbers after a token.
+         */
+        int delimiter(String numbers, int offset);
+    }
+
+    private FailFast() {
+    }
+
+    /**
+     * A split on delimiters that all have the same length.
+     */
+    static Split split(Splitter splitter, int length) {
+        return new Split() {
+            @Override
+            public Iterable<String> tokens(CharSequence body) {
+                return splitter.split(body);
+            }
+
+            @Override
+            public int delimiter(String numbers, int offset) {
+                return length;
+            }
+        };
+    }
+
+    static Split split(Delimiters delimiters) {
+        return new Split() {
+            @Override
+            public Iterable<String> tokens(CharSequence body) {
+                return delimiters.split(body);
+            }
+
+            @Override
+            public int delimiter(String numbers, int offset) {
+                return delimiters.match(numbers, offset, numbers.length());
+            }
+        };
+    }
+
+    /**
+     * Same as {@link Calculator#tryAdd(String, Calculator.Validation)} with {@link Calculator.Validation#FAIL_FAST}
+     * for the stream calculators.
+     *
+     * @param split returns the split of a delimiter, throws {@link IllegalArgumentException} if it is invalid
+     * @param maxLength a longer delimiter is invalid, checked even without numbers
+     * @param ignoreAbove numbers bigger than this are not summed
+     */
+    static AddResult tryAdd(String numbers, Function<String, Split> split, int maxLength, int ignoreAbove) {
+        if (Strings.isNullOrEmpty(numbers)) {
+            return AddResult.ZERO;
+        }
+        String delimiter = DEFAULT_DELIMITER;
+        int from = 0;
+        if (numbers.startsWith("//")) {
+            int newLine = numbers.indexOf('\n', 2);
+            delimiter = numbers.substring(2, newLine < 0 ? numbers.length() : newLine);
+            if (delimiter.isEmpty()) {
+                return AddResult.emptyDelimiter(2);
+            }
+            if (delimiter.length() > maxLength) {
+                return AddResult.of(new IllegalArgumentException("Delimiter too long"));
+            }
+            if (newLine < 0 || newLine + 1 == numbers.length()) {
+                return AddResult.ZERO;
+            }
+            from = newLine + 1;
+        }
+
+        Split tokens;
+        try {
+            tokens = split.apply(delimiter);
+        } catch (IllegalArgumentException e) {
+            return AddResult.of(e);
+        }
+        return sum(numbers, from, tokens, ignoreAbove);
+    }
+
+    private static AddResult sum(String numbers, int from, Split split, int ignoreAbove) {
+        int offset = from;
+        int sum = 0;
+        for (String token : split.tokens(CharBuffer.wrap(numbers, from, numbers.length()))) {
+            int value;
+            try {
+                value = Integer.parseInt(token);
+            } catch (NumberFormatException e) {
+                return AddResult.invalidNumber(token, offset);
+            }
+            if (value < 0) {
+                Negatives negatives = new Negatives(1);
+                negatives.add(value);
+                return AddResult.negatives(negatives, offset);
+            }
+            if (value <= ignoreAbove) {
+                if (sum > Integer.MAX_VALUE - value) {
+                    return AddResult.overflow(offset);
+                }
+                sum += value;
+            }
+            offset += token.length();
+            if (offset < numbers.length()) {
+                offset += split.delimiter(numbers, offset);
+            }
+        }
+        return AddResult.sum(sum);
+    }
+}
@@ -0,0 +1,184 @@
+package org.github.qweek;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Sums a UTF-8 encoded numbers file with the rules of {@link Calculator_9}: the file is memory mapped,
+ * split into chunks that start right after a delimiter, and the chunks are scanned in parallel.
+ * <p>
+ * A chunk boundary is searched from a byte that can't be part of any delimiter: no delimiter can span it,
+ * so scanning from there finds the same next delimiter as scanning from the start of the file.
+ */
+final class FileScanner {
+    private static final long MIN_CHUNK = 1 << 20;
+    private static final long MAX_CHUNK = 1 << 30;
+    private static final int WINDOW = 1 << 16;
+
+    private final DelimiterCache cache;
+    private final ForkJoinPool pool;
+
+    FileScanner(DelimiterCache cache, ForkJoinPool pool) {
+        this.cache = cache;
+        this.pool = pool;
+    }
+
+    int add(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            long size = channel.size();
+            long from = 0;
+            Delimiters delimiters = Delimiters.DEFAULT;
+
+            ByteBuffer prefix = ByteBuffer.allocate(2);
+            channel.read(prefix, 0);
+            if (prefix.position() == 2 && prefix.get(0) == '/' && prefix.get(1) == '/') {
+                ByteArrayOutputStream header = new ByteArrayOutputStream();
+                long newLine = newLine(channel, 2, size, header);
+                if (header.size() == 0) {
+                    throw new IllegalArgumentException("Delimiter is empty");
+                }
+                if (newLine < 0 || newLine + 1 == size) {
+                    return 0;
+                }
+                delimiters = cache.get(new String(header.toByteArray(), UTF_8));
+                if (!ByteScanner.isExact(delimiters)) {
+                    // split by the replacement of malformed bytes, decoded first
+                    channel.position(0);
+                    return new ScannerCalculator(cache, pool).add(channel);
+                }
+                from = newLine + 1;
+            } else if (size == 0) {
+                return 0;
+            }
+
+            List<Long> bounds = bounds(channel, delimiters, from, size);
+            for (int i = 1; i < bounds.size(); i++) {
+                if (bounds.get(i) - bounds.get(i - 1) > Integer.MAX_VALUE) {
+                    // no delimiter found around the cuts for gigabytes, a region that can't be mapped at once
+                    channel.position(0);
+                    return new ScannerCalculator(cache, pool).add(channel);
+                }
+            }
+            try {
+                return pool.invoke(new Sum(channel, delimiters, bounds, 0, bounds.size() - 1)).result();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Returns the position of the first new line at or after {@code from}, or -1, copying the bytes before it.
+     */
+    private static long newLine(FileChannel channel, long from, long size, ByteArrayOutputStream header) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        for (long position = from; position < size; position += buffer.position()) {
+            buffer.clear();
+            channel.read(buffer, position);
+            for (int i = 0; i < buffer.position(); i++) {
+                if (buffer.get(i) == '\n') {
+                    header.write(buffer.array(), 0, i);
+                    return position + i;
+                }
+            }
+            header.write(buffer.array(), 0, buffer.position());
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the start of each chunk, followed by the end of the file.
+     */
+    private List<Long> bounds(FileChannel channel, Delimiters delimiters, long from, long size) throws IOException {
+        long chunk = Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, (size - from) / (pool.getParallelism() * 4L)));
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(from);
+        for (long cut = from + chunk; cut < size; cut += chunk) {
+            long boundary = boundary(channel, delimiters, cut, size);
+            if (boundary > bounds.get(bounds.size() - 1)) {
+                bounds.add(boundary);
+            }
+        }
+        // if the file ends with a delimiter, the last chunk is empty and reports the empty number after it
+        bounds.add(size);
+        return bounds;
+    }
+
+    /**
+     * Returns the end of the first delimiter after {@code cut}, or -1 if none is found close enough.
+     */
+    private static long boundary(FileChannel channel, Delimiters delimiters, long cut, long size) throws IOException {
+        long end = Math.min(size, cut + WINDOW);
+        MappedByteBuffer window = channel.map(READ_ONLY, cut - 1, end - cut + 1);
+        int limit = window.limit();
+
+        int from = 1;
+        while (from < limit && delimiters.contains(window.get(from - 1))) {
+            from++;
+        }
+        if (delimiters.contains(window.get(from - 1))) {
+            return -1;
+        }
+        for (int i = from; i < limit; i++) {
+            if (end < size && i + delimiters.maxByteLength() > limit) {
+                return -1;
+            }
+            int length = delimiters.match(window, i, limit);
+            if (length > 0) {
+                return cut - 1 + i + length;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Sum extends RecursiveTask<PartialSum> {
+        private final FileChannel channel;
+        private final Delimiters delimiters;
+        private final List<Long> bounds;
+        private final int from;
+        private final int to;
+
+        private Sum(FileChannel channel, Delimiters delimiters, List<Long> bounds, int from, int to) {
+            this.channel = channel;
+            this.delimiters = delimiters;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected PartialSum compute() {
+            if (to - from == 1) {
+                long start = bounds.get(from);
+                int length = (int) (bounds.get(to) - start);
+                try {
+                    MappedByteBuffer chunk = channel.map(READ_ONLY, start, length);
+                    return new ByteScanner(delimiters).scan(chunk, 0, length, to == bounds.size() - 1);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            int middle = (from + to) >>> 1;
+            Sum left = new Sum(channel, delimiters, bounds, from, middle);
+            left.fork();
+            PartialSum right = new Sum(channel, delimiters, bounds, middle, to).compute();
+            return left.join().combine(right);
+        }
+    }
+}
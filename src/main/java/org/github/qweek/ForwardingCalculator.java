@@ -0,0 +1,115 @@
+package org.github.qweek;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * A decorator that forwards every method to a calculator through {@link #call}, so each call is observed once
+ * whatever the overload, and the calculator keeps its own path for readers, files, bytes and batches.
+ */
+abstract class ForwardingCalculator implements Calculator {
+    /**
+     * A method of the calculator called with the numbers.
+     */
+    interface Call<T, E extends Exception> {
+        T call(Calculator calculator) throws E;
+    }
+
+    protected final Calculator calculator;
+
+    ForwardingCalculator(Calculator calculator) {
+        this.calculator = Objects.requireNonNull(calculator);
+    }
+
+    /**
+     * Calls the calculator.
+     *
+     * @param numbers the numbers if given as a string, null otherwise
+     * @param length the length of the numbers in chars, or in bytes if encoded, -1 if unknown before the call
+     */
+    abstract <T, E extends Exception> T call(String numbers, long length, Call<T, E> call) throws E;
+
+    @Override
+    public int add(String numbers) {
+        return call(numbers, length(numbers), target -> target.add(numbers));
+    }
+
+    @Override
+    public AddResult tryAdd(String numbers) {
+        return call(numbers, length(numbers), target -> target.tryAdd(numbers));
+    }
+
+    @Override
+    public AddResult tryAdd(String numbers, Validation validation) {
+        return call(numbers, length(numbers), target -> target.tryAdd(numbers, validation));
+    }
+
+    @Override
+    public long addLong(String numbers) {
+        return call(numbers, length(numbers), target -> target.addLong(numbers));
+    }
+
+    @Override
+    public int add(CharSequence numbers, int start, int end) {
+        return call(null, numbers == null ? 0 : end - start, target -> target.add(numbers, start, end));
+    }
+
+    @Override
+    public int add(Reader numbers) throws IOException {
+        return call(null, numbers == null ? 0 : -1, target -> target.add(numbers));
+    }
+
+    @Override
+    public int add(ReadableByteChannel numbers) throws IOException {
+        return call(null, numbers == null ? 0 : -1, target -> target.add(numbers));
+    }
+
+    @Override
+    public int add(byte[] utf8, int offset, int length) {
+        return call(null, utf8 == null ? 0 : length, target -> target.add(utf8, offset, length));
+    }
+
+    @Override
+    public int add(ByteBuffer utf8) {
+        return call(null, utf8 == null ? 0 : utf8.remaining(), target -> target.add(utf8));
+    }
+
+    @Override
+    public int addFile(Path path) throws IOException {
+        return call(null, -1, target -> target.addFile(path));
+    }
+
+    /**
+     * Forwarded as is, not observed: a decorator records the inputs of a batch itself.
+     */
+    @Override
+    public int[] addAll(List<String> inputs) {
+        return calculator.addAll(inputs);
+    }
+
+    @Override
+    public int sum(IntStream numbers) {
+        return calculator.sum(numbers);
+    }
+
+    @Override
+    public long sumLong(IntStream numbers) {
+        return calculator.sumLong(numbers);
+    }
+
+    @Override
+    public BigInteger sumExact(IntStream numbers) {
+        return calculator.sumExact(numbers);
+    }
+
+    private static long length(String numbers) {
+        return numbers == null ? 0 : numbers.length();
+    }
+}
@@ -0,0 +1,158 @@
+package org.github.qweek;
+
+import static java.lang.String.format;
+
+/**
+ * Scans numbers with the rules of {@link Calculator_9} chunk by chunk: the header, partial tokens and
+ * partial delimiters are carried from one chunk to the next, so the whole input never has to be in memory.
+ * Of a token only the number parsed so far is kept, plus its first {@link #MAX_TOKEN_PREFIX} chars to report it if invalid.
+ * <p>
+ * {@link #scan} consumes as much of a chunk as it can and returns where it stopped, the caller passes
+ * the remaining chars again in front of the next chunk. {@link #finish} consumes the last chunk and returns the sum.
+ */
+final class IncrementalScanner {
+    private static final int PREFIX = 0;
+    private static final int HEADER = 1;
+    private static final int BODY = 2;
+    // chars of a token kept to report it as an invalid number, longer tokens are truncated in the message
+    static final int MAX_TOKEN_PREFIX = 1024;
+
+    private final DelimiterCache cache;
+
+    private int phase = PREFIX;
+    private final StringBuilder header = new StringBuilder();
+    // compiled when the first char after the header is seen
+    private Delimiters delimiters;
+    private boolean body;
+
+    private int result;
+    private final Negatives negatives = new Negatives();
+
+    private final NumberParser number;
+    // first chars of the current token from previous chunks and its length, only needed to report an invalid number
+    private final StringBuilder token = new StringBuilder();
+    private long tokenLength;
+
+    IncrementalScanner(DelimiterCache cache) {
+        this.cache = cache;
+        this.number = new NumberParser();
+    }
+
+    /**
+     * Copies the state of {@code scanner}, to finish the copy without changing the original.
+     */
+    IncrementalScanner(IncrementalScanner scanner) {
+        this.cache = scanner.cache;
+        this.phase = scanner.phase;
+        this.header.append(scanner.header);
+        this.delimiters = scanner.delimiters;
+        this.body = scanner.body;
+        this.result = scanner.result;
+        this.negatives.addAll(scanner.negatives);
+        this.number = new NumberParser(scanner.number);
+        this.token.append(scanner.token);
+        this.tokenLength = scanner.tokenLength;
+    }
+
+    int scan(char[] chars, int from, int to) {
+        return scan(chars, from, to, false);
+    }
+
+    int finish(char[] chars, int from, int to) {
+        scan(chars, from, to, true);
+        if (phase == HEADER) {
+            if (header.length() == 0) {
+                throw new IllegalArgumentException("Delimiter is empty");
+            }
+            return 0;
+        }
+
+        negatives.throwIfAny();
+        return result;
+    }
+
+    private int scan(char[] chars, int from, int to, boolean last) {
+        int i = from;
+        if (phase == PREFIX) {
+            if (to - i < 2 && !last) {
+                return i;
+            }
+            if (to - i >= 2 && chars[i] == '/' && chars[i + 1] == '/') {
+                phase = HEADER;
+                i += 2;
+            } else {
+                phase = BODY;
+                delimiters = Delimiters.DEFAULT;
+            }
+        }
+        if (phase == HEADER) {
+            int newLine = i;
+            while (newLine < to && chars[newLine] != '\n') {
+                newLine++;
+            }
+            header.append(chars, i, newLine - i);
+            if (newLine == to) {
+                return to;
+            }
+            if (header.length() == 0) {
+                throw new IllegalArgumentException("Delimiter is empty");
+            }
+            phase = BODY;
+            i = newLine + 1;
+        }
+        if (i == to && !body) {
+            // no numbers after the header yet
+            return i;
+        }
+        if (delimiters == null) {
+            delimiters = cache.get(header.toString());
+        }
+        body = true;
+
+        int start = i;
+        int limit = last ? to : to - delimiters.maxLength() + 1;
+        while (i < limit) {
+            int delimiter = delimiters.match(chars, i, to);
+            if (delimiter > 0) {
+                end(chars, start, i);
+                i += delimiter;
+                start = i;
+                continue;
+            }
+
+            number.append(chars[i++]);
+        }
+
+        if (last) {
+            end(chars, start, i);
+        } else {
+            keep(chars, start, i);
+        }
+        return i;
+    }
+
+    private void keep(char[] chars, int start, int end) {
+        token.append(chars, start, Math.min(end - start, MAX_TOKEN_PREFIX - token.length()));
+        tokenLength += end - start;
+    }
+
+    private void end(char[] chars, int start, int end) {
+        if (!number.isNumber()) {
+            keep(chars, start, end);
+            if (tokenLength > MAX_TOKEN_PREFIX) {
+                throw new IllegalArgumentException(format("Invalid number: '%s...' (%d chars)", token, tokenLength));
+            }
+            throw new IllegalArgumentException(format("Invalid number: '%s'", token));
+        }
+        int value = number.value();
+        if (value < 0) {
+            negatives.add(value);
+        } else if (value <= 1000) {
+            result = Math.addExact(result, value);
+        }
+
+        token.setLength(0);
+        tokenLength = 0;
+        number.reset();
+    }
+}
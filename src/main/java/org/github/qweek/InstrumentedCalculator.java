@@ -0,0 +1,65 @@
+package org.github.qweek;
+
+import java.util.List;
+
+/**
+ * Records calls, input sizes, latencies and rejections of a calculator into {@link CalculatorMetrics}.
+ * <p>
+ * Every method is forwarded to the calculator, so readers, channels, files and bytes keep its own path,
+ * and recorded with the size of the input in chars or bytes when known before the call. Errors returned by
+ * {@code tryAdd} are recorded like the exceptions of {@code add}. A batch is recorded as a call per input,
+ * with the latency of the whole batch.
+ * For the latency of each stage and the token counts, the calculator is created with the same metrics,
+ * e.g. {@code new InstrumentedCalculator(new Calculator_9(new DelimiterCache(), metrics), metrics)}.
+ */
+public class InstrumentedCalculator extends ForwardingCalculator {
+    private final CalculatorMetrics metrics;
+
+    public InstrumentedCalculator(Calculator calculator, CalculatorMetrics metrics) {
+        super(calculator);
+        this.metrics = metrics;
+    }
+
+    public CalculatorMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    <T, E extends Exception> T call(String numbers, long length, Call<T, E> call) throws E {
+        metrics.recordCall(length);
+        long start = metrics.start();
+        try {
+            T result = call.call(calculator);
+            if (result instanceof AddResult) {
+                metrics.recordError(((AddResult) result).getError());
+            }
+            return result;
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            metrics.recordFailure(e);
+            throw e;
+        } finally {
+            metrics.stop(CalculatorMetrics.Stage.TOTAL, start);
+        }
+    }
+
+    @Override
+    public int[] addAll(List<String> inputs) {
+        for (String input : inputs) {
+            metrics.recordCall(input == null ? 0 : input.length());
+        }
+        long start = metrics.start();
+        try {
+            return calculator.addAll(inputs);
+        } catch (BatchException e) {
+            e.getFailures().values().forEach(metrics::recordFailure);
+            throw e;
+        } finally {
+            metrics.stop(CalculatorMetrics.Stage.TOTAL, start);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Instrumented" + calculator;
+    }
+}
@@ -0,0 +1,159 @@
+package org.github.qweek;
+
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the outcomes of a calculator by input, sums and errors alike, for inputs sent many times like retries.
+ * A cached error throws a new exception on each call, never the one thrown when it was computed.
+ * <p>
+ * Inputs are keyed by their hash code, cached by the string, and compared with {@link String#equals(Object)}.
+ * The cache holds at most {@code maximumBytes} of inputs, 2 bytes per char plus {@link #ENTRY_OVERHEAD} per entry,
+ * evicting the least recently used first, and entries expire {@code ttl} after they are computed.
+ * Inputs longer than {@code maxInputLength} chars are not cached. The cache is split in segments locked
+ * on writes only, and concurrent calls with the same missing input compute it once.
+ * <p>
+ * Only numbers given as a string are cached: readers, channels, files, bytes and slices are forwarded
+ * to the calculator, which keeps its own path for them, and counted by {@link #bypassed()}.
+ */
+public class MemoizingCalculator extends ForwardingCalculator {
+    /** Bytes counted for each entry besides its input, so many small inputs still fill the budget. */
+    static final int ENTRY_OVERHEAD = 64;
+
+    private final int maxInputLength;
+    private final LoadingCache<String, AddResult> cache;
+    private final LongAdder bypassed = new LongAdder();
+
+    public MemoizingCalculator(Calculator calculator, long maximumBytes, Duration ttl, int maxInputLength) {
+        this(calculator, maximumBytes, ttl, maxInputLength, Ticker.systemTicker());
+    }
+
+    MemoizingCalculator(Calculator calculator, long maximumBytes, Duration ttl, int maxInputLength, Ticker ticker) {
+        super(calculator);
+        if (maxInputLength < 0) {
+            throw new IllegalArgumentException("Max input length must not be negative: " + maxInputLength);
+        }
+        this.maxInputLength = maxInputLength;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((String numbers, AddResult result) -> weight(numbers))
+                .expireAfterWrite(ttl.toNanos(), TimeUnit.NANOSECONDS)
+                .ticker(ticker)
+                .recordStats()
+                .build(CacheLoader.from(numbers -> calculator.tryAdd(numbers).withoutException()));
+    }
+
+    @Override
+    public int add(String numbers) {
+        return tryAdd(numbers).getOrThrow();
+    }
+
+    @Override
+    public AddResult tryAdd(String numbers) {
+        if (numbers == null || numbers.isEmpty() || numbers.length() > maxInputLength) {
+            bypassed.increment();
+            return calculator.tryAdd(numbers);
+        }
+        try {
+            return cache.getUnchecked(numbers);
+        } catch (UncheckedExecutionException e) {
+            // unexpected exceptions of the calculator are not cached, rethrow the original
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+    }
+
+    /**
+     * With {@link Validation#FAIL_FAST} the outcome is not cached, the cache only holds the outcomes of {@link #tryAdd(String)}.
+     */
+    @Override
+    public AddResult tryAdd(String numbers, Validation validation) {
+        if (validation == Validation.COLLECT_ALL) {
+            return tryAdd(numbers);
+        }
+        bypassed.increment();
+        return calculator.tryAdd(numbers, validation);
+    }
+
+    /**
+     * Each input is cached like {@link #add(String)}.
+     */
+    @Override
+    public int[] addAll(List<String> inputs) {
+        int[] results = new int[inputs.size()];
+        SortedMap<Integer, RuntimeException> failures = new TreeMap<>();
+        for (int i = 0; i < results.length; i++) {
+            AddResult result = tryAdd(inputs.get(i));
+            if (result.isError()) {
+                failures.put(i, result.toException());
+            } else {
+                results[i] = result.getSum();
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new BatchException(results, failures);
+        }
+        return results;
+    }
+
+    /**
+     * Numbers not given as a string are not cached.
+     */
+    @Override
+    <T, E extends Exception> T call(String numbers, long length, Call<T, E> call) throws E {
+        bypassed.increment();
+        return call.call(calculator);
+    }
+
+    /**
+     * Not cached, the outcomes are limited to the range of {@link #add(String)}.
+     */
+    @Override
+    public long addLong(String numbers) {
+        return calculator.addLong(numbers);
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Hit, miss and eviction counters, calls with inputs not cached are only counted by {@link #bypassed()}.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Calls with inputs empty, longer than the max input length or not given as a string,
+     * or with {@link Validation#FAIL_FAST}.
+     */
+    public long bypassed() {
+        return bypassed.sum();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static int weight(String numbers) {
+        return (int) Math.min(Integer.MAX_VALUE, 2L * numbers.length() + ENTRY_OVERHEAD);
+    }
+
+    @Override
+    public String toString() {
+        return "Memoizing" + calculator;
+    }
+}
@@ -0,0 +1,127 @@
+package org.github.qweek;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static java.lang.String.format;
+
+/**
+ * Negative numbers found in the input, in order. Only the first {@code limit} values are kept, the others are
+ * counted, so the message of the exception stays short however many negatives there are:
+ * "negatives not allowed: -1,-2,... (9,999,998 more)".
+ * The offsets of the kept values in the input are recorded too if asked.
+ */
+final class Negatives {
+    static final int DEFAULT_LIMIT = 100;
+
+    private final int limit;
+    private final boolean recordOffsets;
+    private int[] values;
+    private int[] offsets;
+    private int size;
+    private long count;
+
+    Negatives() {
+        this(DEFAULT_LIMIT);
+    }
+
+    Negatives(int limit) {
+        this(limit, false);
+    }
+
+    /**
+     * @param recordOffsets keeps the offsets passed to {@link #add(int, int)} along with the values
+     */
+    Negatives(int limit, boolean recordOffsets) {
+        this.limit = limit;
+        this.recordOffsets = recordOffsets;
+    }
+
+    void add(int value) {
+        add(value, -1);
+    }
+
+    void add(int value, int offset) {
+        if (size < limit) {
+            if (values == null) {
+                values = new int[Math.min(8, limit)];
+                offsets = recordOffsets ? new int[values.length] : null;
+            } else if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(size * 2, limit));
+                offsets = recordOffsets ? Arrays.copyOf(offsets, values.length) : null;
+            }
+            if (recordOffsets) {
+                offsets[size] = offset;
+            }
+            values[size++] = value;
+        }
+        count++;
+    }
+
+    /**
+     * Appends the negatives found after these ones.
+     */
+    void addAll(Negatives next) {
+        for (int i = 0; i < next.size; i++) {
+            add(next.values[i], next.offsets == null ? -1 : next.offsets[i]);
+        }
+        count += next.count - next.size;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    long count() {
+        return count;
+    }
+
+    void clear() {
+        size = 0;
+        count = 0;
+    }
+
+    /**
+     * Returns the kept values, the first ones in order.
+     */
+    int[] values() {
+        return values == null ? new int[0] : Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Returns the offsets of the kept values, null unless recorded.
+     */
+    int[] offsets() {
+        if (!recordOffsets) {
+            return null;
+        }
+        return offsets == null ? new int[0] : Arrays.copyOf(offsets, size);
+    }
+
+    /**
+     * Returns the exception to throw if not {@link #isEmpty()}, formatted only when called.
+     */
+    IllegalArgumentException exception() {
+        return new IllegalArgumentException(message(values, size, count));
+    }
+
+    static String message(int[] values, int size, long count) {
+        StringBuilder message = new StringBuilder("negatives not allowed: ");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                message.append(',');
+            }
+            message.append(values[i]);
+        }
+        if (count > size) {
+            message.append(size > 0 ? "," : "").append(format(Locale.ROOT, "... (%,d more)", count - size));
+        }
+        return message.toString();
+    }
+
+    void throwIfAny() {
+        if (!isEmpty()) {
+            throw exception();
+        }
+    }
+}
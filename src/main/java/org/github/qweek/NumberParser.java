@@ -0,0 +1,98 @@
+package org.github.qweek;
+
+/**
+ * Parses a number char by char with the rules of {@link Integer#parseInt}: an optional sign followed by decimal digits
+ * of any script, within the range of an int. The scanners only differ in how they find the delimiters around numbers,
+ * they all parse the numbers with this state machine.
+ */
+final class NumberParser {
+    private long magnitude;
+    private int length;
+    private int digits;
+    private boolean negative;
+    private boolean malformed;
+
+    NumberParser() {
+    }
+
+    NumberParser(NumberParser parser) {
+        this.magnitude = parser.magnitude;
+        this.length = parser.length;
+        this.digits = parser.digits;
+        this.negative = parser.negative;
+        this.malformed = parser.malformed;
+    }
+
+    /**
+     * Appends the next char of the number.
+     */
+    void append(char c) {
+        length++;
+        if (malformed) {
+            return;
+        }
+        int digit = c - '0';
+        if (digit < 0 || digit > 9) {
+            digit = c < 0x80 ? -1 : Character.digit(c, 10);
+        }
+        if (digit >= 0) {
+            magnitude = magnitude * 10 + digit;
+            digits++;
+            checkRange();
+        } else if (length == 1 && (c == '-' || c == '+')) {
+            negative = c == '-';
+        } else {
+            malformed = true;
+        }
+    }
+
+    /**
+     * Appends {@code count} ascii digits at once, from 1 to 8, of the given value. Only called if not {@link #isMalformed()}.
+     */
+    void appendDigits(int value, int count) {
+        // at most 2147483648 * 10^8 before the check, no overflow of the long
+        magnitude = magnitude * Digits.power(count) + value;
+        length += count;
+        digits += count;
+        checkRange();
+    }
+
+    private void checkRange() {
+        // -2147483648 is the only value without a positive counterpart
+        if (magnitude > (negative ? 2147483648L : Integer.MAX_VALUE)) {
+            malformed = true;
+        }
+    }
+
+    /**
+     * Returns true once the chars appended so far can't be the start of a number.
+     */
+    boolean isMalformed() {
+        return malformed;
+    }
+
+    /**
+     * Returns true if the chars appended are a number.
+     */
+    boolean isNumber() {
+        return !malformed && digits > 0;
+    }
+
+    /**
+     * The number, only if {@link #isNumber()}.
+     */
+    int value() {
+        return (int) (negative ? -magnitude : magnitude);
+    }
+
+    /**
+     * Starts the next number.
+     */
+    void reset() {
+        magnitude = 0;
+        length = 0;
+        digits = 0;
+        negative = false;
+        malformed = false;
+    }
+}
@@ -0,0 +1,147 @@
+package org.github.qweek;
+
+/**
+ * Results of scanning a region of numbers with {@link Rules}, without throwing:
+ * the sum of the accepted numbers, the first invalid number or overflow and the negatives.
+ * <p>
+ * Results of consecutive regions are combined in order, with the rules of {@link Calculator_9}: accepted numbers
+ * are never negative, so the sum only grows and the sum before the first invalid number tells
+ * whether {@link Math#addExact} would have overflowed first.
+ */
+final class PartialSum {
+    private static final Rules DEFAULT_RULES = Rules.step(9);
+
+    private final boolean negativesAllowed;
+    private final long ignoreAbove;
+    private final boolean saturate;
+    private final long max;
+    private final boolean failFast;
+
+    private long sum;
+    private boolean overflow;
+    private int overflowOffset = -1;
+    private String invalid;
+    private int invalidOffset;
+    private final Negatives negatives;
+    private int negativesOffset = -1;
+
+    PartialSum() {
+        this(Integer.MAX_VALUE, false);
+    }
+
+    PartialSum(long max, boolean failFast) {
+        this(DEFAULT_RULES, max, failFast);
+    }
+
+    /**
+     * @param max the sum overflows past this value, or below its opposite minus one
+     * @param failFast the first negative not allowed stops the scan, see {@link Calculator.Validation#FAIL_FAST}
+     */
+    PartialSum(Rules rules, long max, boolean failFast) {
+        this.negativesAllowed = rules.isNegativesAllowed();
+        this.ignoreAbove = rules.getIgnoreAbove();
+        this.saturate = rules.getOverflow() == Rules.Overflow.SATURATE;
+        this.negatives = new Negatives(rules.getNegativesLimit(), rules.isNegativeOffsets());
+        this.max = max;
+        this.failFast = failFast;
+    }
+
+    /**
+     * Adds the number found at {@code offset}, returns false once the rest of the region doesn't change the result.
+     */
+    boolean add(int number, int offset) {
+        if (number < 0 && !negativesAllowed) {
+            if (negatives.isEmpty()) {
+                negativesOffset = offset;
+            }
+            negatives.add(number, offset);
+            return !failFast;
+        }
+        if (number <= ignoreAbove) {
+            sum += number;
+            if (sum > max || sum < -max - 1) {
+                if (!saturate) {
+                    overflow = true;
+                    overflowOffset = offset;
+                    return false;
+                }
+                sum = sum > 0 ? max : -max - 1;
+            }
+        }
+        return true;
+    }
+
+    void invalid(String number, int offset) {
+        invalid = number;
+        invalidOffset = offset;
+    }
+
+    /**
+     * Appends the results of the region that follows this one.
+     */
+    PartialSum combine(PartialSum next) {
+        if (isStopped()) {
+            return this;
+        }
+        sum += next.sum;
+        if (next.overflow || sum > max) {
+            // the number that made the whole sum overflow is unknown
+            overflow = true;
+            overflowOffset = -1;
+            return this;
+        }
+        invalid = next.invalid;
+        invalidOffset = next.invalidOffset;
+        if (negatives.isEmpty()) {
+            negativesOffset = next.negativesOffset;
+        }
+        negatives.addAll(next.negatives);
+        return this;
+    }
+
+    private boolean isStopped() {
+        return overflow || invalid != null || failFast && !negatives.isEmpty();
+    }
+
+    /**
+     * Returns the sum of all the scanned regions, or throws the same exception as {@link Calculator_9}.
+     */
+    int result() {
+        return (int) toResult().longOrThrow();
+    }
+
+    /**
+     * Returns the exception {@link Calculator_9} would throw, or null.
+     */
+    RuntimeException failure() {
+        return toResult().toException();
+    }
+
+    /**
+     * Returns the sum or the error, the offset of an overflow found by {@link #combine} is unknown.
+     */
+    AddResult toResult() {
+        if (overflow) {
+            return AddResult.overflow(overflowOffset);
+        }
+        if (invalid != null) {
+            return AddResult.invalidNumber(invalid, invalidOffset);
+        }
+        if (!negatives.isEmpty()) {
+            return AddResult.negatives(negatives, negativesOffset);
+        }
+        return AddResult.sum(sum);
+    }
+
+    /**
+     * Clears the results to scan other numbers, keeping the allocated space.
+     */
+    void reset() {
+        sum = 0;
+        overflow = false;
+        overflowOffset = -1;
+        invalid = null;
+        negatives.clear();
+        negativesOffset = -1;
+    }
+}
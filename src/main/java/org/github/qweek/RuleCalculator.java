@@ -0,0 +1,121 @@
+package org.github.qweek;
+
+import com.google.common.base.CharMatcher;
+
+import java.nio.CharBuffer;
+import java.util.function.Function;
+
+/**
+ * Calculator with configurable {@link Rules}, e.g. {@code new RuleCalculator(Rules.step(9).withIgnoreAbove(10_000))}.
+ * <p>
+ * The rules are not stages of a pipeline: the numbers are split and parsed by the loop of {@link CharScanner},
+ * the same as {@link ScannerCalculator}, into a {@link PartialSum} that reads the rules once into fields
+ * and checks them inline, so every rule set runs the same fast path.
+ */
+public class RuleCalculator implements Calculator {
+    private static final CharMatcher NEW_LINE = CharMatcher.is('\n');
+    private static final Delimiters COMMA = Delimiters.of(",", ",");
+    private static final Delimiters COMMA_OR_NEW_LINE = Delimiters.of(",\n", ",", "\n");
+
+    private final Rules rules;
+    private final boolean header;
+    private final boolean singleChar;
+    private final Delimiters defaults;
+    private final DelimiterCache cache;
+
+    public RuleCalculator(Rules rules) {
+        this.rules = rules;
+        this.header = rules.getSyntax() != Rules.Syntax.COMMA && rules.getSyntax() != Rules.Syntax.COMMA_OR_NEW_LINE;
+        this.singleChar = rules.getSyntax() == Rules.Syntax.SINGLE_CHAR;
+        this.defaults = rules.getSyntax() == Rules.Syntax.COMMA_OR_NEW_LINE ? COMMA_OR_NEW_LINE : COMMA;
+        this.cache = new DelimiterCache(DelimiterCache.DEFAULT_MAXIMUM_SIZE, compiler(rules.getSyntax()));
+    }
+
+    public Rules getRules() {
+        return rules;
+    }
+
+    @Override
+    public int add(String numbers) {
+        return tryAdd(numbers).getOrThrow();
+    }
+
+    @Override
+    public AddResult tryAdd(String numbers) {
+        return tryAdd(numbers, Validation.COLLECT_ALL);
+    }
+
+    /**
+     * With {@link Validation#FAIL_FAST} the first negative not allowed stops the scan like an invalid number.
+     */
+    @Override
+    public AddResult tryAdd(String numbers, Validation validation) {
+        return tryAdd((CharSequence) numbers, validation == Validation.FAIL_FAST);
+    }
+
+    /**
+     * Same as {@link #add(String)}, the numbers are scanned in place without copying them.
+     */
+    @Override
+    public int add(CharSequence numbers, int start, int end) {
+        return numbers == null ? 0 : tryAdd(CharBuffer.wrap(numbers, start, end), false).getOrThrow();
+    }
+
+    private AddResult tryAdd(CharSequence numbers, boolean failFast) {
+        if (numbers == null || numbers.length() == 0) {
+            return AddResult.ZERO;
+        }
+
+        if (header && numbers.length() >= 2 && numbers.charAt(0) == '/' && numbers.charAt(1) == '/') {
+            int newLine = NEW_LINE.indexIn(numbers, 2);
+            if (newLine == 2 || numbers.length() == 2) {
+                return AddResult.emptyDelimiter(2);
+            }
+            if (singleChar && (newLine < 0 ? numbers.length() : newLine) > 3) {
+                // checked even without numbers, like Calculator_4
+                return AddResult.of(new IllegalArgumentException("Delimiter too long"));
+            }
+            if (newLine < 0 || newLine + 1 == numbers.length()) {
+                return AddResult.ZERO;
+            }
+            Delimiters delimiters;
+            try {
+                delimiters = cache.get(numbers.subSequence(2, newLine).toString());
+            } catch (IllegalArgumentException e) {
+                // invalid headers are rare and never cached
+                return AddResult.of(e);
+            }
+            return scan(numbers, newLine + 1, delimiters, failFast);
+        }
+
+        return scan(numbers, 0, defaults, failFast);
+    }
+
+    private AddResult scan(CharSequence numbers, int from, Delimiters delimiters, boolean failFast) {
+        PartialSum partial = new PartialSum(rules, Integer.MAX_VALUE, failFast);
+        return CharScanner.scan(delimiters, numbers, from, numbers.length(), true, partial).toResult();
+    }
+
+    private static Function<String, Delimiters> compiler(Rules.Syntax syntax) {
+        switch (syntax) {
+            case SINGLE_CHAR:
+            case SINGLE:
+                return header -> Delimiters.of(header, header);
+            case MULTIPLE_CHARS:
+                return header -> {
+                    Delimiters delimiters = Delimiters.compile(header);
+                    if (delimiters.maxLength() > 1) {
+                        throw new IllegalArgumentException("Delimiter too long");
+                    }
+                    return delimiters;
+                };
+            default:
+                return Delimiters::compile;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + rules;
+    }
+}
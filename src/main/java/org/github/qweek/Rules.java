@@ -0,0 +1,165 @@
+package org.github.qweek;
+
+import java.util.Objects;
+
+/**
+ * Rules of a {@link RuleCalculator}: how delimiters are declared, whether negatives are allowed and how they are reported,
+ * above which value numbers are ignored and what happens when the sum overflows.
+ * <p>
+ * Rules are immutable, each {@code with...} method returns a copy, e.g. {@code Rules.step(9).withIgnoreAbove(10_000)}.
+ */
+public final class Rules {
+    public enum Syntax {
+        /** Numbers separated by ",". */
+        COMMA,
+        /** Numbers separated by "," or "\n", like {@link Calculator_3}. */
+        COMMA_OR_NEW_LINE,
+        /** An optional "//;\n" header declares a delimiter of one char, like {@link Calculator_4}. */
+        SINGLE_CHAR,
+        /** An optional "//***\n" header declares a delimiter of any length, like {@link Calculator_7}. */
+        SINGLE,
+        /** An optional "//*|%\n" header declares delimiters of one char, like {@link Calculator_8}. */
+        MULTIPLE_CHARS,
+        /** An optional "//**|%\n" header declares delimiters of any length, like {@link Calculator_9}. */
+        MULTIPLE
+    }
+
+    public enum Overflow {
+        /** Throws {@link ArithmeticException} as soon as the sum overflows. */
+        THROW,
+        /** Clamps the sum to the range of an int. */
+        SATURATE
+    }
+
+    private static final Rules DEFAULT = new Rules(Syntax.MULTIPLE, false, Negatives.DEFAULT_LIMIT, false, 1000, Overflow.THROW);
+
+    private final Syntax syntax;
+    private final boolean negativesAllowed;
+    private final int negativesLimit;
+    private final boolean negativeOffsets;
+    private final int ignoreAbove;
+    private final Overflow overflow;
+
+    private Rules(Syntax syntax, boolean negativesAllowed, int negativesLimit, boolean negativeOffsets,
+                  int ignoreAbove, Overflow overflow) {
+        if (negativesLimit < 0) {
+            throw new IllegalArgumentException("Negatives limit must not be negative: " + negativesLimit);
+        }
+        this.syntax = Objects.requireNonNull(syntax);
+        this.negativesAllowed = negativesAllowed;
+        this.negativesLimit = negativesLimit;
+        this.negativeOffsets = negativeOffsets;
+        this.ignoreAbove = ignoreAbove;
+        this.overflow = Objects.requireNonNull(overflow);
+    }
+
+    /**
+     * Rules of the calculator of a kata step, from {@link Calculator_3} to {@link Calculator_9}.
+     */
+    public static Rules step(int step) {
+        switch (step) {
+            case 3:
+                return step(4).withSyntax(Syntax.COMMA_OR_NEW_LINE);
+            case 4:
+                return step(5).withNegativesAllowed(true);
+            case 5:
+                return step(6).withIgnoreAbove(Integer.MAX_VALUE);
+            case 6:
+                return step(7).withSyntax(Syntax.SINGLE_CHAR);
+            case 7:
+                return step(9).withSyntax(Syntax.SINGLE);
+            case 8:
+                return step(9).withSyntax(Syntax.MULTIPLE_CHARS);
+            case 9:
+                return DEFAULT;
+            default:
+                throw new IllegalArgumentException("No rules for step " + step);
+        }
+    }
+
+    public Rules withSyntax(Syntax syntax) {
+        return new Rules(syntax, negativesAllowed, negativesLimit, negativeOffsets, ignoreAbove, overflow);
+    }
+
+    /**
+     * If allowed, negatives are summed, otherwise they are all reported in the exception.
+     */
+    public Rules withNegativesAllowed(boolean negativesAllowed) {
+        return new Rules(syntax, negativesAllowed, negativesLimit, negativeOffsets, ignoreAbove, overflow);
+    }
+
+    /**
+     * At most {@code limit} negatives are listed in the exception, the others are only counted. 100 by default.
+     */
+    public Rules withNegativesLimit(int limit) {
+        return new Rules(syntax, negativesAllowed, limit, negativeOffsets, ignoreAbove, overflow);
+    }
+
+    /**
+     * If recorded, {@link AddResult#getNegativeOffsets()} returns where the listed negatives are in the input.
+     */
+    public Rules withNegativeOffsets(boolean negativeOffsets) {
+        return new Rules(syntax, negativesAllowed, negativesLimit, negativeOffsets, ignoreAbove, overflow);
+    }
+
+    /**
+     * Numbers bigger than {@code value} are ignored, {@link Integer#MAX_VALUE} to keep all of them.
+     */
+    public Rules withIgnoreAbove(int value) {
+        return new Rules(syntax, negativesAllowed, negativesLimit, negativeOffsets, value, overflow);
+    }
+
+    public Rules withOverflow(Overflow overflow) {
+        return new Rules(syntax, negativesAllowed, negativesLimit, negativeOffsets, ignoreAbove, overflow);
+    }
+
+    public Syntax getSyntax() {
+        return syntax;
+    }
+
+    public boolean isNegativesAllowed() {
+        return negativesAllowed;
+    }
+
+    public int getNegativesLimit() {
+        return negativesLimit;
+    }
+
+    public boolean isNegativeOffsets() {
+        return negativeOffsets;
+    }
+
+    public int getIgnoreAbove() {
+        return ignoreAbove;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Rules)) {
+            return false;
+        }
+        Rules rules = (Rules) o;
+        return syntax == rules.syntax && negativesAllowed == rules.negativesAllowed
+                && negativesLimit == rules.negativesLimit && negativeOffsets == rules.negativeOffsets
+                && ignoreAbove == rules.ignoreAbove && overflow == rules.overflow;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(syntax, negativesAllowed, negativesLimit, negativeOffsets, ignoreAbove, overflow);
+    }
+
+    @Override
+    public String toString() {
+        return "Rules{" + syntax + ", negativesAllowed=" + negativesAllowed
+                + ", negativesLimit=" + negativesLimit + ", negativeOffsets=" + negativeOffsets
+                + ", ignoreAbove=" + ignoreAbove + ", overflow=" + overflow + '}';
+    }
+}
@@ -0,0 +1,348 @@
+package org.github.qweek;
+
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+
+public class ScannerCalculator implements Calculator {
+    private static final int RECENT_HEADERS = 64;
+    private static final int BUFFER_SIZE = 8192;
+    private static final int NO_NUMBERS = -1;
+    private static final int EMPTY_DELIMITER = -2;
+    private static final byte[] NEW_LINE = {'\n'};
+
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 20;
+
+    private final DelimiterCache cache;
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+    // last headers seen, looked up without creating a key, backed by the bounded cache
+    private final Delimiters[] recent = new Delimiters[RECENT_HEADERS];
+
+    public ScannerCalculator() {
+        this(new DelimiterCache());
+    }
+
+    public ScannerCalculator(DelimiterCache cache) {
+        this(cache, ForkJoinPool.commonPool());
+    }
+
+    public ScannerCalculator(DelimiterCache cache, ForkJoinPool pool) {
+        this(cache, pool, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param parallelThreshold numbers of at least this length are split and summed in parallel on the pool
+     */
+    public ScannerCalculator(DelimiterCache cache, ForkJoinPool pool, int parallelThreshold) {
+        this.cache = cache;
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Same rules as {@link Calculator_9}, but the input is scanned once, char by char:
+     * header, delimiters, digits, negatives and numbers bigger than 1000 are handled in the same loop,
+     * without intermediate tokens, boxed values or streams.
+     */
+    @Override
+    public int add(String numbers) {
+        return (int) add(numbers, Integer.MAX_VALUE).longOrThrow();
+    }
+
+    /**
+     * Same rules as {@link #add(String)}, the numbers are summed into a long.
+     */
+    @Override
+    public long addLong(String numbers) {
+        return add(numbers, Long.MAX_VALUE).longOrThrow();
+    }
+
+    /**
+     * Same as {@link #add(String)}, nothing is thrown nor formatted for an error, which is returned with its offset.
+     */
+    @Override
+    public AddResult tryAdd(String numbers) {
+        return add(numbers, Integer.MAX_VALUE);
+    }
+
+    /**
+     * With {@link Validation#FAIL_FAST} the first negative stops the scan like an invalid number, and the scan is never parallel.
+     */
+    @Override
+    public AddResult tryAdd(String numbers, Validation validation) {
+        return add(numbers, Integer.MAX_VALUE, validation == Validation.FAIL_FAST);
+    }
+
+    /**
+     * Same as {@link #add(String)}, the numbers are scanned in place without copying them.
+     */
+    @Override
+    public int add(CharSequence numbers, int start, int end) {
+        return numbers == null ? 0 : (int) add(CharBuffer.wrap(numbers, start, end), Integer.MAX_VALUE).longOrThrow();
+    }
+
+    private AddResult add(CharSequence numbers, long max) {
+        return add(numbers, max, false);
+    }
+
+    private AddResult add(CharSequence numbers, long max, boolean failFast) {
+        int from = body(numbers);
+        if (from < 0) {
+            return from == NO_NUMBERS ? AddResult.ZERO : AddResult.emptyDelimiter(2);
+        }
+        Delimiters delimiters = Delimiters.DEFAULT;
+        if (from > 0) {
+            delimiters = delimiters(numbers, 2, from - 1);
+            if (delimiters == null) {
+                return AddResult.emptyDelimiter(2);
+            }
+        }
+
+        PartialSum partial;
+        if (!failFast && numbers.length() - from >= parallelThreshold && pool.getParallelism() > 1) {
+            partial = new CharScanner(delimiters).add(numbers, from, numbers.length(), pool, max);
+        } else {
+            partial = CharScanner.scan(delimiters, numbers, from, numbers.length(), true, new PartialSum(max, failFast));
+        }
+        AddResult result = partial.toResult();
+        if (result.getError() == AddResult.Error.OVERFLOW && result.getOffset() < 0) {
+            return AddResult.overflow(overflow(numbers, from, delimiters, max));
+        }
+        return result;
+    }
+
+    /**
+     * Same rules as {@link #add(String)}, ascii digits and delimiters are matched on the bytes without copying them,
+     * only the header and invalid numbers are decoded.
+     */
+    @Override
+    public int add(byte[] utf8, int offset, int length) {
+        return utf8 == null ? 0 : add(ByteBuffer.wrap(utf8, offset, length));
+    }
+
+    /**
+     * Same rules as {@link #add(byte[], int, int)}, the position of the buffer doesn't change.
+     */
+    @Override
+    public int add(ByteBuffer utf8) {
+        return utf8 == null ? 0 : (int) add(utf8, utf8.position(), utf8.limit(), NEW_LINE).longOrThrow();
+    }
+
+    /**
+     * Same as {@link #add(ByteBuffer)} for {@code bytes[from..to)}, where the header ends with the bytes of {@code newLine}
+     * instead of "\n", e.g. the two chars "\n" when a request can't contain a new line.
+     */
+    AddResult add(ByteBuffer bytes, int from, int to, byte[] newLine) {
+        if (from == to) {
+            return AddResult.ZERO;
+        }
+        Delimiters delimiters = Delimiters.DEFAULT;
+        if (to - from >= 2 && bytes.get(from) == '/' && bytes.get(from + 1) == '/') {
+            int end = from + 2;
+            while (end < to && !matches(bytes, end, to, newLine)) {
+                end++;
+            }
+            if (end == from + 2) {
+                return AddResult.emptyDelimiter(2);
+            }
+            if (end + newLine.length >= to) {
+                return AddResult.ZERO;
+            }
+            byte[] encoded = new byte[end - from - 2];
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = bytes.get(from + 2 + i);
+            }
+            String header = new String(encoded, UTF_8);
+            delimiters = delimiters(header, 0, header.length());
+            if (delimiters == null) {
+                return AddResult.emptyDelimiter(2);
+            }
+            from = end + newLine.length;
+        }
+        return ByteScanner.add(delimiters, bytes, from, to);
+    }
+
+    private static boolean matches(ByteBuffer bytes, int from, int to, byte[] sequence) {
+        if (to - from < sequence.length) {
+            return false;
+        }
+        for (int i = 0; i < sequence.length; i++) {
+            if (bytes.get(from + i) != sequence[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns where the numbers start after the header, {@link #NO_NUMBERS} or {@link #EMPTY_DELIMITER}.
+     */
+    private static int body(CharSequence numbers) {
+        if (numbers == null || numbers.length() == 0) {
+            return NO_NUMBERS;
+        }
+        int length = numbers.length();
+        if (length < 2 || numbers.charAt(0) != '/' || numbers.charAt(1) != '/') {
+            return 0;
+        }
+        int newLine = 2;
+        while (newLine < length && numbers.charAt(newLine) != '\n') {
+            newLine++;
+        }
+        if (newLine == 2) {
+            return EMPTY_DELIMITER;
+        }
+        if (newLine >= length - 1) {
+            return NO_NUMBERS;
+        }
+        return newLine + 1;
+    }
+
+    /**
+     * Same as {@link Calculator#addAll(List)}, each header is compiled once for the whole batch
+     * and the inputs are scanned one after the other into the same partial sum.
+     */
+    @Override
+    public int[] addAll(List<String> inputs) {
+        int[] results = new int[inputs.size()];
+        SortedMap<Integer, RuntimeException> failures = new TreeMap<>();
+        PartialSum partial = new PartialSum();
+        for (int i = 0; i < results.length; i++) {
+            String numbers = inputs.get(i);
+            int from = body(numbers);
+            if (from == NO_NUMBERS) {
+                continue;
+            }
+            Delimiters delimiters = from == 0 ? Delimiters.DEFAULT : from > 0 ? delimiters(numbers, 2, from - 1) : null;
+            if (delimiters == null) {
+                failures.put(i, new IllegalArgumentException("Delimiter is empty"));
+                continue;
+            }
+            partial.reset();
+            RuntimeException failure = CharScanner.scan(delimiters, numbers, from, numbers.length(), true, partial).failure();
+            if (failure != null) {
+                failures.put(i, failure);
+            } else {
+                results[i] = partial.result();
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new BatchException(results, failures);
+        }
+        return results;
+    }
+
+    /**
+     * Same rules as {@link #add(String)}, the input is read through a fixed size buffer and never held in memory as a whole.
+     * An invalid number is reported with its first {@value IncrementalScanner#MAX_TOKEN_PREFIX} chars and its length.
+     */
+    @Override
+    public int add(Reader numbers) throws IOException {
+        if (numbers == null) {
+            return 0;
+        }
+
+        IncrementalScanner scanner = new IncrementalScanner(cache);
+        char[] buffer = new char[BUFFER_SIZE];
+        int length = 0;
+        while (true) {
+            if (length == buffer.length) {
+                // a delimiter longer than the buffer
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int read = numbers.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                return scanner.finish(buffer, 0, length);
+            }
+            length += read;
+            int consumed = scanner.scan(buffer, 0, length);
+            System.arraycopy(buffer, consumed, buffer, 0, length - consumed);
+            length -= consumed;
+        }
+    }
+
+    /**
+     * Same rules as {@link #add(String)} for a UTF-8 encoded file, which is memory mapped and scanned by chunks in parallel.
+     */
+    @Override
+    public int addFile(Path path) throws IOException {
+        return new FileScanner(cache, pool).add(path);
+    }
+
+    /**
+     * Returns the delimiters of the header in {@code numbers[from..to)}, or null if it declares an empty delimiter.
+     */
+    private Delimiters delimiters(CharSequence numbers, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + numbers.charAt(i);
+        }
+        int index = (hash ^ hash >>> 16) & (RECENT_HEADERS - 1);
+
+        Delimiters delimiters = recent[index];
+        if (delimiters != null && matches(numbers, from, to, delimiters.header())) {
+            return delimiters;
+        }
+        try {
+            delimiters = cache.get(numbers.subSequence(from, to).toString());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        recent[index] = delimiters;
+        return delimiters;
+    }
+
+    private static boolean matches(CharSequence numbers, int from, int to, String header) {
+        if (header.length() != to - from) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (numbers.charAt(i) != header.charAt(i - from)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the start of the number that makes the sum of {@code numbers[from..]} overflow past {@code max}.
+     * Only called once the parallel scan found an overflow, all the numbers before it are valid.
+     */
+    private static int overflow(CharSequence numbers, int from, Delimiters delimiters, long max) {
+        int length = numbers.length();
+        long result = 0;
+        int start = from;
+        int i = from;
+        while (true) {
+            int delimiter = i < length ? delimiters.match(numbers, i, length) : 0;
+            if (i < length && delimiter == 0) {
+                i++;
+                continue;
+            }
+            int value = Integer.parseInt(numbers.subSequence(start, i).toString());
+            if (value > 0 && value <= 1000) {
+                result += value;
+                if (result > max) {
+                    return start;
+                }
+            }
+            if (i == length) {
+                return -1;
+            }
+            i += delimiter;
+            start = i;
+        }
+    }
+}
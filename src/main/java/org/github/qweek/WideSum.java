@@ -0,0 +1,39 @@
+package org.github.qweek;
+
+import java.math.BigInteger;
+
+/**
+ * Mutable sum of ints that can't overflow, to collect an {@code IntStream}.
+ * <p>
+ * Ints are added to a long without any check: 2^32 ints sum to at most 2^63 - 2^32 and at least -2^63,
+ * so the long is only spilled into a {@link BigInteger} once per block of 2^32 ints.
+ */
+final class WideSum {
+    private static final long BLOCK = 1L << 32;
+
+    private long sum;
+    private long count;
+    private BigInteger spilled = BigInteger.ZERO;
+
+    void add(int value) {
+        sum += value;
+        if (++count == BLOCK) {
+            spill();
+        }
+    }
+
+    void combine(WideSum other) {
+        spill();
+        spilled = spilled.add(other.value());
+    }
+
+    BigInteger value() {
+        return spilled.add(BigInteger.valueOf(sum));
+    }
+
+    private void spill() {
+        spilled = spilled.add(BigInteger.valueOf(sum));
+        sum = 0;
+        count = 0;
+    }
+}
@@ -1,5 +1,7 @@
 package org.github.qweek;
 
+import com.google.common.base.Strings;
+import com.google.common.base.Ticker;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -8,15 +10,73 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.IntStream.empty;
 import static java.util.stream.IntStream.of;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(MockitoExtension.class)
 class CalculatorTest {
+    private static final String[] SAMPLES = {
+            "", "1", "1,2", "/", "//", "//;", "//\n1", "//;\n", "//;\n1;2", "//|\n", "//||\n",
+            "+5,-0,0005", "-", "+", "1-2", "1,+", "--1", "2147483648,1", "-2147483649", "-2147483648,5",
+            "\u0661\u0662,3", "1\n2", " 1,2", "1,2 ", "1,a,-2", "-1,a", "-1,2147483647,1000,a",
+            "1000,1001,999", "//1\n213", "//12|1\n51233", "//a|ab\n1ab2", "//;|\n1;2", "//;||\n1;2",
+            "//;\n1;2\n3", "//-\n1-2", "//--|-\n1--2-3", "//***|%%%|???\n111***222%%%333???444",
+            "//?|@|~|\u007f\n1?2@3~4\u007f5", "//\u0080\n1\u00802", "//\u0080|,\n1\u00802,3"
+    };
 
     private static Stream<Calculator> calculators() {
         return Stream.of(
@@ -28,7 +88,9 @@ class CalculatorTest {
                 new Calculator_6(),
                 new Calculator_7(),
                 new Calculator_8(),
-                new Calculator_9()
+                new Calculator_9(),
+                new ScannerCalculator(),
+                new RuleCalculator(Rules.step(9))
         );
     }
 
@@ -43,11 +105,25 @@ class CalculatorTest {
         assertEquals(6, calculator.sum(of(1, 2, 3)));
     }
 
+    @DisplayName("Test wide sums for all calculators")
+    @ParameterizedTest(name = "{index}: {arguments}.sumLong(...)")
+    @MethodSource("calculators")
+    void testSumWide(Calculator calculator) {
+        assertEquals(0, calculator.sumLong(null));
+        assertEquals(BigInteger.ZERO, calculator.sumExact(empty()));
+        assertEquals(6, calculator.sumLong(of(1, 2, 3)));
+        assertEquals(2L * Integer.MAX_VALUE, calculator.sumLong(of(Integer.MAX_VALUE, Integer.MAX_VALUE)));
+        assertEquals(-1, calculator.sumLong(of(Integer.MAX_VALUE, Integer.MIN_VALUE)));
+        assertEquals(1000L * Integer.MAX_VALUE, calculator.sumLong(IntStream.range(0, 1000).parallel().map(i -> Integer.MAX_VALUE)));
+        assertEquals(BigInteger.valueOf(Integer.MIN_VALUE).multiply(BigInteger.valueOf(1000)),
+                calculator.sumExact(IntStream.range(0, 1000).map(i -> Integer.MIN_VALUE)));
+    }
+
     @DisplayName("Test add for all calculators")
     @ParameterizedTest(name = "{index}: {arguments}.add(...)")
     @MethodSource("calculators")
     void testAdd(Calculator calculator) {
-        assertEquals(0, calculator.add(null));
+        assertEquals(0, calculator.add((String) null));
         assertEquals(0, calculator.add(""));
         assertEquals(1, calculator.add("1"));
         assertEquals(3, calculator.add("1,2"));
@@ -60,6 +136,174 @@ class CalculatorTest {
         assertThrows(IllegalArgumentException.class, () -> calculator.add("1;2"));
     }
 
+    @DisplayName("Test add from a reader or a channel for all calculators")
+    @ParameterizedTest(name = "{index}: {arguments}.add(...)")
+    @MethodSource("calculators")
+    void testAddStream(Calculator calculator) throws IOException {
+        for (String input : SAMPLES) {
+            String expected = outcome(() -> calculator.add(input));
+            assertEquals(expected, outcome(() -> calculator.add(new StringReader(input))), input);
+            assertEquals(expected, outcome(() -> calculator.add(trickle(input))), input);
+            assertEquals(expected, outcome(() -> calculator.add(Channels.newChannel(new ByteArrayInputStream(input.getBytes(UTF_8))))), input);
+        }
+        assertEquals(0, calculator.add((Reader) null));
+        assertEquals(0, calculator.add((ReadableByteChannel) null));
+    }
+
+    @DisplayName("Test add of a slice of chars for all calculators")
+    @ParameterizedTest(name = "{index}: {arguments}.add(...)")
+    @MethodSource("calculators")
+    void testAddSlice(Calculator calculator) {
+        for (String input : SAMPLES) {
+            String expected = outcome(() -> calculator.add(input));
+            StringBuilder builder = new StringBuilder("1,\n//").append(input).append("\n,-1");
+            assertEquals(expected, outcome(() -> calculator.add(builder, 5, 5 + input.length())), input);
+            assertEquals(expected, outcome(() -> calculator.add(CharBuffer.wrap(builder), 5, 5 + input.length())), input);
+            assertEquals(expected, outcome(() -> calculator.add(input, 0, input.length())), input);
+        }
+        assertEquals(0, calculator.add((CharSequence) null, 0, 0));
+        assertEquals(3, calculator.add(new StringBuilder("1,2,3"), 0, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> calculator.add("1,2", 1, 4));
+    }
+
+    @DisplayName("Test add of UTF-8 bytes for all calculators")
+    @ParameterizedTest(name = "{index}: {arguments}.add(...)")
+    @MethodSource("calculators")
+    void testAddBytes(Calculator calculator) throws IOException {
+        List<byte[]> inputs = new ArrayList<>();
+        for (String input : SAMPLES) {
+            inputs.add(input.getBytes(UTF_8));
+        }
+        // malformed UTF-8 in the header, in a delimiter and in a number
+        inputs.add(new byte[]{'/', '/', (byte) 0xC3, '\n', '1', (byte) 0xC3, '2'});
+        inputs.add(new byte[]{'/', '/', (byte) 0xE9, '|', ';', '\n', '1', (byte) 0xE9, '2', ';', '3'});
+        inputs.add(new byte[]{'1', (byte) 0xFF, ',', '2'});
+
+        Path file = Files.createTempFile("numbers", ".txt");
+        for (byte[] input : inputs) {
+            String expected = outcome(() -> calculator.add(new String(input, UTF_8)));
+            Files.write(file, input);
+            assertEquals(expected, outcome(() -> calculator.addFile(file)));
+            byte[] padded = new byte[input.length + 6];
+            System.arraycopy(input, 0, padded, 3, input.length);
+            ByteBuffer direct = ByteBuffer.allocateDirect(padded.length);
+            direct.put(padded).position(3).limit(3 + input.length);
+
+            assertEquals(expected, outcome(() -> calculator.add(padded, 3, input.length)));
+            assertEquals(expected, outcome(() -> calculator.add(ByteBuffer.wrap(padded, 3, input.length))));
+            assertEquals(expected, outcome(() -> calculator.add(direct)));
+            assertEquals(3, direct.position());
+            assertEquals(expected, outcome(() -> calculator.add(Channels.newChannel(new ByteArrayInputStream(input)))));
+        }
+        Files.delete(file);
+        assertEquals(0, calculator.add((byte[]) null, 0, 0));
+        assertEquals(0, calculator.add((ByteBuffer) null));
+    }
+
+    @DisplayName("Test add from a file for all calculators")
+    @ParameterizedTest(name = "{index}: {arguments}.addFile(...)")
+    @MethodSource("calculators")
+    void testAddFile(Calculator calculator) throws IOException {
+        Path file = Files.createTempFile("numbers", ".txt");
+        try {
+            for (String input : SAMPLES) {
+                Files.write(file, input.getBytes(UTF_8));
+                assertEquals(outcome(() -> calculator.add(input)), outcome(() -> calculator.addFile(file)), input);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @DisplayName("Test add of a batch for all calculators")
+    @ParameterizedTest(name = "{index}: {arguments}.addAll(...)")
+    @MethodSource("calculators")
+    void testAddAll(Calculator calculator) {
+        String[] expected = Arrays.stream(SAMPLES).map(input -> outcome(() -> calculator.add(input))).toArray(String[]::new);
+        BatchException thrown = assertThrows(BatchException.class, () -> calculator.addAll(SAMPLES));
+        int[] results = thrown.getResults();
+        for (int i = 0; i < SAMPLES.length; i++) {
+            RuntimeException failure = thrown.getFailures().get(i);
+            String actual = failure == null ? String.valueOf(results[i]) : failure.getClass().getSimpleName() + ": " + failure.getMessage();
+            assertEquals(expected[i], actual, SAMPLES[i]);
+        }
+
+        assertArrayEquals(new int[]{0, 3, 7}, calculator.addAll("", "1,2", "3,4"));
+        assertArrayEquals(new int[0], calculator.addAll());
+    }
+
+    @DisplayName("Test add without exceptions for all calculators")
+    @ParameterizedTest(name = "{index}: {arguments}.tryAdd(...)")
+    @MethodSource("calculators")
+    void testTryAdd(Calculator calculator) {
+        for (String input : SAMPLES) {
+            AddResult result = calculator.tryAdd(input);
+            assertEquals(outcome(() -> calculator.add(input)), outcome(result::getOrThrow), input);
+            assertEquals(result.isError(), result.getError() != null, input);
+        }
+        assertEquals(3, calculator.tryAdd("1,2").getSum());
+        assertEquals(AddResult.Error.INVALID_NUMBER, calculator.tryAdd("1,x").getError());
+    }
+
+    @DisplayName("Test fail fast validation for all calculators")
+    @ParameterizedTest(name = "{index}: {arguments}.tryAdd(..., FAIL_FAST)")
+    @MethodSource("calculators")
+    void testTryAddValidation(Calculator calculator) {
+        for (String input : SAMPLES) {
+            AddResult all = calculator.tryAdd(input);
+            assertEquals(all.toString(), calculator.tryAdd(input, Calculator.Validation.COLLECT_ALL).toString(), input);
+            AddResult first = calculator.tryAdd(input, Calculator.Validation.FAIL_FAST);
+            // only the first of several errors in the numbers may differ
+            if (!all.isError() || all.getError() == AddResult.Error.EMPTY_DELIMITER || all.getError() == AddResult.Error.OTHER) {
+                assertEquals(outcome(all::getOrThrow), outcome(first::getOrThrow), input);
+            } else {
+                assertTrue(first.isError(), input);
+            }
+        }
+    }
+
+    @Test
+    void testFailFast() {
+        Calculator.Validation failFast = Calculator.Validation.FAIL_FAST;
+        for (Calculator calculator : Arrays.asList(new Calculator_5(), new Calculator_6(), new Calculator_7(), new Calculator_8(),
+                new Calculator_9(), new ScannerCalculator(), new ScannerCalculator(new DelimiterCache(), ForkJoinPool.commonPool(), 0),
+                new RuleCalculator(Rules.step(9)), new InstrumentedCalculator(new ScannerCalculator(), new CalculatorMetrics()),
+                new MemoizingCalculator(new ScannerCalculator(), 1 << 20, Duration.ofMinutes(1), 1000))) {
+            AddResult result = calculator.tryAdd("1,-2,3,-4", failFast);
+            assertEquals(AddResult.Error.NEGATIVES, result.getError(), calculator.toString());
+            assertEquals(2, result.getOffset(), calculator.toString());
+            assertEquals("negatives not allowed: -2", result.toException().getMessage());
+
+            result = calculator.tryAdd("-1,a", failFast);
+            assertEquals(AddResult.Error.NEGATIVES, result.getError());
+            assertEquals(0, result.getOffset());
+            assertEquals(AddResult.Error.INVALID_NUMBER, calculator.tryAdd("-1,a").getError());
+
+            result = calculator.tryAdd("//;\n1;22;x;-4", failFast);
+            assertEquals(AddResult.Error.INVALID_NUMBER, result.getError());
+            assertEquals(9, result.getOffset());
+            assertEquals("Invalid number: 'x'", result.toException().getMessage());
+
+            assertEquals(6, calculator.tryAdd("//;\n1;2;3", failFast).getSum());
+            assertEquals(0, calculator.tryAdd("//;\n", failFast).getSum());
+            assertEquals(AddResult.Error.EMPTY_DELIMITER, calculator.tryAdd("//\n1", failFast).getError());
+            // the rejected input is only scanned up to the first negative
+            assertEquals(1, calculator.tryAdd("1,-1," + Strings.repeat("1,", 1_000_000) + "-2", failFast).getNegativesCount());
+        }
+        // the outcome cached for COLLECT_ALL is not the one of FAIL_FAST
+        Calculator memoizing = new MemoizingCalculator(new ScannerCalculator(), 1 << 20, Duration.ofMinutes(1), 1000);
+        assertEquals("INVALID_NUMBER at 7", memoizing.tryAdd("-1,2,3,a").toString());
+        assertEquals("NEGATIVES at 0", memoizing.tryAdd("-1,2,3,a", failFast).toString());
+        for (Calculator calculator : Arrays.asList(new Calculator_9(), new ScannerCalculator(), new RuleCalculator(Rules.step(9)))) {
+            AddResult result = calculator.tryAdd("//**|;\n1**2;-3**-4", failFast);
+            assertEquals(12, result.getOffset());
+            assertArrayEquals(new int[]{-3}, result.getNegatives());
+        }
+        AddResult overflow = new Calculator_5().tryAdd("2147483647,0,1,-1", failFast);
+        assertEquals(AddResult.Error.OVERFLOW, overflow.getError());
+        assertEquals(13, overflow.getOffset());
+    }
+
     @Test
     void testCalculator_1() {
         Calculator calculator = new Calculator_1();
@@ -208,6 +452,760 @@ class CalculatorTest {
 
         // support multiple delimiters with multiple chars
         testComplexDelimiters(calculator);
+        testOverlappingDelimiters(calculator);
+    }
+
+    @Test
+    void testScannerCalculator() throws IOException {
+        Calculator calculator = new ScannerCalculator();
+
+        testEmptyArgumentsNotSupported(calculator);
+        testNegativeNumbersNotSupported(calculator);
+        testMaxArgumentsNotSupported(calculator);
+
+        testMultipleNumbersLessThanThousand(calculator);
+        testMultipleNegativeNumbersNotSupported(calculator);
+
+        testCustomDelimiter(calculator);
+        testMultipleCharDelimiter(calculator);
+        testMultipleDelimiters(calculator);
+        testComplexDelimiters(calculator);
+        testOverlappingDelimiters(calculator);
+
+        // same results and messages as Calculator_9
+        testSameAsCalculator_9(calculator);
+
+        // delimiters and tokens across buffer boundaries
+        String delimiter = Strings.repeat("*", 10000);
+        StringBuilder numbers = new StringBuilder("//").append(delimiter).append("|;\n0");
+        for (int i = 1; i <= 1000; i++) {
+            numbers.append(i % 2 == 0 ? delimiter : ";").append(Strings.repeat("0", i)).append(i);
+        }
+        String input = numbers.toString();
+        assertEquals(500500, calculator.add(input));
+        assertEquals(500500, new Calculator_9().add(input));
+        assertEquals(500500, calculator.add(trickle(input)));
+        // a long invalid token is not kept whole, only its first chars are reported
+        assertThrowsWithMessage("Invalid number: '" + Strings.repeat("0", IncrementalScanner.MAX_TOKEN_PREFIX) + "...' (10001 chars)",
+                () -> calculator.add(new StringReader(input + ";" + Strings.repeat("0", 10000) + "x;1")));
+        assertThrowsWithMessage("Invalid number: '" + Strings.repeat("0", 1000) + "x'",
+                () -> calculator.add(new StringReader(input + ";" + Strings.repeat("0", 1000) + "x;1")));
+    }
+
+    @Test
+    void testDelimiterCache() {
+        DelimiterCache cache = new DelimiterCache(2);
+        Calculator calculator = new Calculator_9(cache);
+
+        assertEquals(6, calculator.add("//*|%\n1*2%3"));
+        assertEquals(6, calculator.add("//*|%\n1*2%3"));
+        assertEquals(123, calculator.add("//ab|c\n100ab20c3"));
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(2, cache.stats().missCount());
+        assertEquals(2, cache.size());
+
+        // least recently used header is evicted
+        assertEquals(6, calculator.add("//*|%\n1*2%3"));
+        assertEquals(6, calculator.add("//;\n1;2;3"));
+        assertEquals(1, cache.stats().evictionCount());
+        assertEquals(6, calculator.add("//*|%\n1*2%3"));
+        assertEquals(3, cache.stats().hitCount());
+        assertEquals(2, cache.size());
+
+        // invalid headers are rejected and not cached
+        assertThrows(IllegalArgumentException.class, () -> calculator.add("//a||b\n1a2"));
+        assertThrows(IllegalArgumentException.class, () -> calculator.add("//a||b\n1a2"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testScannerCalculatorBatch() {
+        DelimiterCache cache = new DelimiterCache();
+        Calculator calculator = new ScannerCalculator(cache);
+
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            inputs.add(i % 2 == 0 ? "//;|**\n" + i + ";1**2" : "//%\n" + i + "%1");
+        }
+        int[] results = calculator.addAll(inputs);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i % 2 == 0 ? i + 3 : i + 1, results[i]);
+        }
+        assertEquals(2, cache.stats().missCount());
+
+        BatchException thrown = assertThrows(BatchException.class, () -> calculator.addAll("1,2", "//\n1", "1,-2,-3", "3,4", "1,x"));
+        assertArrayEquals(new int[]{3, 0, 0, 7, 0}, thrown.getResults());
+        assertEquals(Arrays.asList(1, 2, 4), new ArrayList<>(thrown.getFailures().keySet()));
+        assertEquals("negatives not allowed: -2,-3", thrown.getFailures().get(2).getMessage());
+        assertEquals("3 of 5 inputs failed, first at 1: Delimiter is empty", thrown.getMessage());
+    }
+
+    @Test
+    void testAddLong() {
+        // sums to Integer.MAX_VALUE + 353
+        String numbers = Strings.repeat("1000,", 2_147_484) + "0";
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (Calculator calculator : Arrays.asList(new Calculator_9(), new ScannerCalculator(),
+                    new ScannerCalculator(new DelimiterCache(), pool, 0))) {
+                assertEquals(2_147_484_000L, calculator.addLong(numbers));
+                assertEquals(2_147_484_000L, calculator.addLong("//;\n" + numbers.replace(',', ';')));
+                assertEquals(6, calculator.addLong("1,2,3"));
+                assertEquals(0, calculator.addLong(null));
+                assertThrows(ArithmeticException.class, () -> calculator.add(numbers));
+                assertThrowsWithMessage("negatives not allowed: -1", () -> calculator.addLong(numbers + ",-1"));
+                assertThrowsWithMessage("Invalid number: 'x'", () -> calculator.addLong(numbers + ",x"));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testManyNegatives() throws IOException {
+        String numbers = IntStream.rangeClosed(1, 200_000).mapToObj(i -> i % 2 == 0 ? "1" : "-" + i).collect(joining(","));
+        String expected = "negatives not allowed: " + IntStream.range(0, Negatives.DEFAULT_LIMIT).mapToObj(i -> "-" + (2 * i + 1))
+                .collect(joining(",")) + ",... (99,900 more)";
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (Calculator calculator : Arrays.asList(new Calculator_5(), new Calculator_6(), new Calculator_7(), new Calculator_8(),
+                    new Calculator_9(), new ScannerCalculator(), new ScannerCalculator(new DelimiterCache(), pool, 0))) {
+                assertThrowsWithMessage(expected, () -> calculator.add(numbers));
+                assertThrowsWithMessage(expected, () -> calculator.add(new StringReader(numbers)));
+                assertEquals(expected, assertThrows(BatchException.class, () -> calculator.addAll(numbers)).getFailures().get(0).getMessage());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        Calculator calculator = new ScannerCalculator();
+        Path file = Files.createTempFile("numbers", ".txt");
+        try {
+            Files.write(file, numbers.getBytes(UTF_8));
+            assertThrowsWithMessage(expected, () -> calculator.addFile(file));
+        } finally {
+            Files.delete(file);
+        }
+
+        Negatives negatives = new Negatives(0);
+        negatives.add(-1);
+        assertEquals("negatives not allowed: ... (1 more)", negatives.exception().getMessage());
+    }
+
+    @Test
+    void testScannerCalculatorTryAdd() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (Calculator calculator : Arrays.asList(new ScannerCalculator(), new ScannerCalculator(new DelimiterCache(), pool, 0))) {
+                AddResult result = calculator.tryAdd("//;|**\n1;22**x3;4");
+                assertEquals(AddResult.Error.INVALID_NUMBER, result.getError());
+                assertEquals(13, result.getOffset());
+                assertEquals("x3", result.getNumber());
+                assertEquals("Invalid number: 'x3'", result.toException().getMessage());
+
+                result = calculator.tryAdd("1,-2,3,-4");
+                assertEquals(AddResult.Error.NEGATIVES, result.getError());
+                assertEquals(2, result.getOffset());
+                assertArrayEquals(new int[]{-2, -4}, result.getNegatives());
+                assertEquals(2, result.getNegativesCount());
+
+                result = calculator.tryAdd(Strings.repeat("1000,", 2_147_483) + "999,1,-1,x");
+                assertEquals(AddResult.Error.OVERFLOW, result.getError());
+                assertEquals(2_147_483 * 5, result.getOffset());
+                assertEquals(ArithmeticException.class, result.toException().getClass());
+
+                assertEquals(AddResult.Error.EMPTY_DELIMITER, calculator.tryAdd("//\n1").getError());
+                assertEquals(AddResult.Error.EMPTY_DELIMITER, calculator.tryAdd("//;||a\n1").getError());
+                assertEquals(2, calculator.tryAdd("//;||a\n1").getOffset());
+                assertEquals(0, calculator.tryAdd(null).getSum());
+                assertEquals(-1, calculator.tryAdd("1,2").getOffset());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testRuleCalculator() throws ReflectiveOperationException {
+        for (int step = 3; step <= 9; step++) {
+            Calculator expected = (Calculator) Class.forName(getClass().getPackage().getName() + ".Calculator_" + step).newInstance();
+            Calculator calculator = new RuleCalculator(Rules.step(step));
+            for (String input : SAMPLES) {
+                assertEquals(outcome(() -> expected.add(input)), outcome(() -> calculator.add(input)), step + ": " + input);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> Rules.step(10));
+
+        Calculator thousands = new RuleCalculator(Rules.step(9).withIgnoreAbove(10_000));
+        assertEquals(11_000, thousands.add("1000,10000,10001"));
+        assertThrowsWithMessage("negatives not allowed: -1", () -> thousands.add("1,-1"));
+
+        Calculator negatives = new RuleCalculator(Rules.step(9).withNegativesAllowed(true));
+        assertEquals(-3, negatives.add("//;\n-1;-2"));
+        assertEquals(-2147483648, negatives.add("-2147483648,1001"));
+        assertEquals(AddResult.Error.OVERFLOW, negatives.tryAdd("-2147483648,-1").getError());
+        assertEquals(12, negatives.tryAdd("-2147483648,-1").getOffset());
+
+        Calculator saturate = new RuleCalculator(Rules.step(4).withSyntax(Rules.Syntax.COMMA).withOverflow(Rules.Overflow.SATURATE));
+        assertEquals(Integer.MAX_VALUE, saturate.add("2147483647,1"));
+        assertEquals(Integer.MAX_VALUE - 1, saturate.add("2147483647,1,-1"));
+        assertEquals(Integer.MIN_VALUE, saturate.add("-2147483648,-1"));
+        assertThrowsWithMessage("Invalid number: '//;\n1'", () -> saturate.add("//;\n1"));
+
+        assertEquals(Rules.step(9), new RuleCalculator(Rules.step(8).withSyntax(Rules.Syntax.MULTIPLE)).getRules());
+
+        Calculator limited = new RuleCalculator(Rules.step(9).withNegativesLimit(2).withNegativeOffsets(true));
+        assertThrowsWithMessage("negatives not allowed: -1,-2,... (1 more)", () -> limited.add("-1,-2,3,-4"));
+        AddResult result = limited.tryAdd("//;\n1;-22;3;-4;-5");
+        assertArrayEquals(new int[]{-22, -4}, result.getNegatives());
+        assertArrayEquals(new int[]{6, 12}, result.getNegativeOffsets());
+        assertEquals(3, result.getNegativesCount());
+        assertEquals(0, new RuleCalculator(Rules.step(9)).tryAdd("1,-2").getNegativeOffsets().length);
+        assertThrows(IllegalArgumentException.class, () -> Rules.step(9).withNegativesLimit(-1));
+    }
+
+    @Test
+    void testCalculatorSession() {
+        Calculator expected = new Calculator_9();
+        for (String input : SAMPLES) {
+            CalculatorSession session = new CalculatorSession();
+            assertEquals(0, session.current());
+            for (int i = 0; i < input.length(); i++) {
+                String prefix = input.substring(0, i + 1);
+                session.append(input.substring(i, i + 1));
+                assertEquals(outcome(() -> expected.add(prefix)), outcome(session::current), prefix);
+            }
+        }
+
+        // same as Calculator_9, faster on large inputs
+        Calculator scanner = new ScannerCalculator();
+        Random random = new Random(42);
+        for (String input : largeSamples()) {
+            CalculatorSession session = new CalculatorSession();
+            for (int i = 0; i < input.length(); ) {
+                int end = Math.min(input.length(), i + random.nextInt(1_000_000));
+                session.append(new StringBuilder(input.substring(i, end)));
+                i = end;
+                String prefix = input.substring(0, end);
+                assertEquals(streamed(outcome(() -> scanner.add(prefix))), outcome(session::current));
+            }
+        }
+    }
+
+    @Test
+    void testCalculatorMetrics() throws JMException {
+        CalculatorMetrics metrics = new CalculatorMetrics();
+        Calculator calculator = new InstrumentedCalculator(new Calculator_9(new DelimiterCache(), metrics), metrics);
+        assertEquals(3, calculator.add("1,2"));
+        assertEquals(1, calculator.add("//;\n1;1001"));
+        assertEquals(0, calculator.add(""));
+        assertThrows(IllegalArgumentException.class, () -> calculator.add("-1,2"));
+        assertThrows(IllegalArgumentException.class, () -> calculator.add("1,a"));
+        assertThrows(IllegalArgumentException.class, () -> calculator.add("//\n1"));
+        Calculator overflow = new InstrumentedCalculator(numbers -> {
+            throw new ArithmeticException("integer overflow");
+        }, metrics);
+        assertThrows(ArithmeticException.class, () -> overflow.add("1000,2147483647"));
+        assertEquals(3000, calculator.addLong("1000,1000,1000"));
+
+        CalculatorMetrics.Snapshot snapshot = metrics.getSnapshot();
+        assertEquals(8, snapshot.getCalls());
+        // the invalid number stops the stream
+        assertEquals(2 + 2 + 2 + 3, snapshot.getTokens());
+        assertEquals(1, snapshot.getIgnored());
+        assertEquals(1, snapshot.getNegativeRejections());
+        assertEquals(1, snapshot.getInvalidRejections());
+        assertEquals(1, snapshot.getOverflows());
+        assertEquals(1, snapshot.getEmptyDelimiters());
+        assertEquals(1, snapshot.getInputSizes()[0]);
+        assertEquals(2, snapshot.getInputSizes()[3]);
+        assertEquals(8, Arrays.stream(snapshot.getTotalLatencies()).sum());
+        assertEquals(2, Arrays.stream(snapshot.getHeaderLatencies()).sum());
+        assertEquals(5, Arrays.stream(snapshot.getDelimitersLatencies()).sum());
+        assertEquals(4, Arrays.stream(snapshot.getScanLatencies()).sum());
+
+        ObjectName name = metrics.register("test");
+        try {
+            CompositeData attribute = (CompositeData) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Snapshot");
+            assertEquals(8L, attribute.get("calls"));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+
+        CalculatorMetrics disabled = CalculatorMetrics.disabled();
+        new InstrumentedCalculator(new Calculator_9(new DelimiterCache(), disabled), disabled).add("//;\n1;2");
+        assertEquals(0, disabled.getSnapshot().getCalls());
+        assertEquals(0, disabled.getSnapshot().getTokens());
+    }
+
+    @Test
+    void testInstrumentedCalculatorForwarding() throws IOException {
+        CalculatorMetrics metrics = new CalculatorMetrics();
+        Calculator calculator = new InstrumentedCalculator(new ScannerCalculator(), metrics);
+        assertEquals(3, calculator.add(new StringReader("1,2")));
+        assertEquals(3, calculator.add(ByteBuffer.wrap("1,2".getBytes(UTF_8))));
+        assertEquals(3, calculator.add("x1,2x", 1, 4));
+        // the offsets of the scanner are kept
+        assertEquals("NEGATIVES at 2", calculator.tryAdd("1,-2").toString());
+        assertEquals("NEGATIVES at 0", calculator.tryAdd("-1,a", Calculator.Validation.FAIL_FAST).toString());
+        BatchException batch = assertThrows(BatchException.class, () -> calculator.addAll("1", "a", "-1"));
+        assertEquals(2, batch.getFailures().size());
+
+        CalculatorMetrics.Snapshot snapshot = metrics.getSnapshot();
+        assertEquals(8, snapshot.getCalls());
+        // the length of the reader is unknown
+        assertEquals(7, Arrays.stream(snapshot.getInputSizes()).sum());
+        assertEquals(3, snapshot.getNegativeRejections());
+        assertEquals(1, snapshot.getInvalidRejections());
+        assertEquals(6, Arrays.stream(snapshot.getTotalLatencies()).sum());
+    }
+
+    @Test
+    void testMemoizingCalculator() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Calculator_9 delegate = new Calculator_9();
+        AtomicLong nanos = new AtomicLong();
+        Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        MemoizingCalculator calculator = new MemoizingCalculator(numbers -> {
+            calls.incrementAndGet();
+            return delegate.add(numbers);
+        }, 1 << 20, Duration.ofSeconds(10), 100, ticker);
+
+        assertEquals(6, calculator.add("1,2,3"));
+        assertEquals(6, calculator.add(new String("1,2,3")));
+        assertEquals(1, calls.get());
+        // errors are cached too, and thrown again as new exceptions
+        IllegalArgumentException first = assertThrows(IllegalArgumentException.class, () -> calculator.add("1,-2"));
+        IllegalArgumentException second = assertThrows(IllegalArgumentException.class, () -> calculator.add("1,-2"));
+        assertEquals(first.getMessage(), second.getMessage());
+        assertNotSame(first, second);
+        assertEquals(AddResult.Error.NEGATIVES, calculator.tryAdd("1,-2").getError());
+        assertEquals(2, calls.get());
+        assertEquals(3, calculator.stats().hitCount());
+        assertEquals(2, calculator.stats().missCount());
+
+        // the kind of error and the message are kept
+        NumberFormatException invalid = new NumberFormatException("Invalid number: 'x'");
+        AddResult cached = AddResult.of(invalid).withoutException();
+        assertEquals(IllegalArgumentException.class, cached.toException().getClass());
+        assertNotSame(cached.toException(), cached.toException());
+        assertEquals(invalid.getMessage(), cached.toException().getMessage());
+        AddResult overflow = AddResult.of(new ArithmeticException("integer overflow")).withoutException();
+        assertEquals(ArithmeticException.class, overflow.toException().getClass());
+        assertEquals("integer overflow", overflow.toException().getMessage());
+
+        // empty and long inputs are not cached
+        String large = Strings.repeat("1,", 50) + "1";
+        assertEquals(0, calculator.add(""));
+        assertEquals(51, calculator.add(large));
+        assertEquals(51, calculator.add(large));
+        assertEquals(5, calls.get());
+        assertEquals(3, calculator.bypassed());
+        assertEquals(2, calculator.size());
+        // numbers not given as a string are forwarded uncached
+        assertEquals(6, calculator.add(new StringReader("1,2,3")));
+        assertEquals(6, calls.get());
+        assertEquals(4, calculator.bypassed());
+        assertEquals(2, calculator.size());
+        // a batch is cached input by input
+        BatchException batch = assertThrows(BatchException.class, () -> calculator.addAll("1,2,3", "1,-2"));
+        assertEquals(6, batch.getResults()[0]);
+        assertEquals(first.getMessage(), batch.getFailures().get(1).getMessage());
+        assertEquals(6, calls.get());
+
+        nanos.addAndGet(Duration.ofSeconds(11).toNanos());
+        assertEquals(6, calculator.add("1,2,3"));
+        assertEquals(7, calls.get());
+
+        // the budget is counted in bytes of the inputs
+        MemoizingCalculator small = new MemoizingCalculator(delegate, 4 * (2 * 10 + MemoizingCalculator.ENTRY_OVERHEAD),
+                Duration.ofMinutes(1), 100);
+        for (int i = 0; i < 1000; i++) {
+            small.add(String.format("%04d,%05d", i, i));
+        }
+        assertTrue(small.size() <= 4);
+        assertTrue(small.stats().evictionCount() >= 996);
+
+        MemoizingCalculator shared = new MemoizingCalculator(delegate, 1 << 20, Duration.ofMinutes(1), 100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        assertEquals(i % 100 + 1, shared.add((i % 100) + ",1"));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // threads waiting for the same input count as misses but it is computed once
+        assertEquals(100, shared.stats().loadSuccessCount());
+        assertEquals(80_000, shared.stats().requestCount());
+    }
+
+    @Test
+    void testColumnCalculator() throws IOException {
+        ColumnCalculator calculator = new ColumnCalculator();
+        assertArrayEquals(new long[0], calculator.add((String) null));
+        assertArrayEquals(new long[0], calculator.add(""));
+        assertArrayEquals(new long[0], calculator.add("//;\n"));
+        assertArrayEquals(new long[0], calculator.add("//;\n//|"));
+        assertArrayEquals(new long[]{1}, calculator.add("1"));
+        assertArrayEquals(new long[]{4, 6}, calculator.add("1,2\n3,4"));
+        assertArrayEquals(new long[]{4, 6}, calculator.add("1,2\r\n3,4\r\n"));
+        assertArrayEquals(new long[]{4, 2, 5}, calculator.add("1,2\n3\n0,1001,5"));
+        assertArrayEquals(new long[]{4, 6}, calculator.add("//;\n1;2\n3;4"));
+        assertArrayEquals(new long[]{4, 6}, calculator.add("//;\n//#\n1;2#3;4"));
+        assertArrayEquals(new long[]{9, 12}, calculator.add("//**|*\n//;;|;\n1**2;;3*4;5**6"));
+        assertThrowsWithMessage("Delimiter is empty", () -> calculator.add("//\n1"));
+        assertThrowsWithMessage("Delimiter is empty", () -> calculator.add("//;\n//\n1"));
+        assertThrowsWithMessage("Invalid number: ''", () -> calculator.add("1,2\n\n3,4"));
+        assertThrowsWithMessage("Invalid number: ''", () -> calculator.add("1,,2"));
+        assertThrowsWithMessage("Invalid number: 'a'", () -> calculator.add("1,-2\n3,a"));
+        assertThrowsWithMessage("negatives not allowed: -2,-3", () -> calculator.add("1,-2\n-3,4"));
+
+        // sequential, parallel and streamed sums of the same rows
+        ColumnCalculator parallel = new ColumnCalculator(new DelimiterCache(), new ForkJoinPool(4), 1);
+        Random random = new Random(42);
+        String[] headers = {"", "//;\n", "//**|;\n//#|%%\n", "//\u0080\n//\u0081|\r\n"};
+        for (int i = 0; i < 200; i++) {
+            String header = headers[random.nextInt(headers.length)];
+            Delimiters columns = header.isEmpty() ? Delimiters.DEFAULT : Delimiters.compile(header.substring(2, header.indexOf('\n')));
+            String[] rowDelimiters = header.indexOf("\n//") < 0 ? new String[]{"\n", "\r\n"}
+                    : header.substring(header.indexOf("\n//") + 3, header.lastIndexOf('\n')).split("[|]");
+            String[] columnDelimiters = columns.header().split("[|]");
+            int rows = i < 4 ? 50_000 : random.nextInt(100);
+            long[] expected = new long[5];
+            int width = 0;
+            StringBuilder input = new StringBuilder(header);
+            for (int row = 0; row < rows; row++) {
+                int cells = 1 + random.nextInt(5);
+                width = Math.max(width, cells);
+                for (int column = 0; column < cells; column++) {
+                    int value = random.nextInt(1200);
+                    expected[column] += value <= 1000 ? value : 0;
+                    input.append(value);
+                    if (column < cells - 1) {
+                        input.append(columnDelimiters[random.nextInt(columnDelimiters.length)]);
+                    }
+                }
+                if (row < rows - 1 || random.nextBoolean()) {
+                    input.append(rowDelimiters[random.nextInt(rowDelimiters.length)]);
+                }
+            }
+            if (i % 3 == 1 && rows > 0) {
+                input.insert(header.length() + random.nextInt(input.length() - header.length()), random.nextBoolean() ? "-" : "x");
+            }
+            String numbers = input.toString();
+            String sequential = columns(() -> calculator.add(numbers));
+            if (i % 3 != 1) {
+                assertEquals(Arrays.toString(Arrays.copyOf(expected, width)), sequential, numbers);
+            }
+            assertEquals(sequential, columns(() -> parallel.add(numbers)), numbers);
+            assertEquals(sequential, columns(() -> calculator.add(new StringReader(numbers))), numbers);
+            if (rows < 100) {
+                assertEquals(sequential, columns(() -> calculator.add(trickle(numbers))), numbers);
+            }
+        }
+    }
+
+    @Test
+    void testDigits() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            byte[] bytes = new byte[8];
+            random.nextBytes(bytes);
+            int count = random.nextInt(9);
+            for (int j = 0; j < count; j++) {
+                bytes[j] = (byte) ('0' + random.nextInt(10));
+            }
+            int expected = 0;
+            while (expected < 8 && bytes[expected] >= '0' && bytes[expected] <= '9') {
+                expected++;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(random.nextBoolean() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+            long word = Digits.word(buffer, 0);
+            assertEquals(expected, Digits.leading(word));
+            if (expected > 0) {
+                assertEquals(Integer.parseInt(new String(bytes, 0, expected, UTF_8)), Digits.parse(word, expected));
+            }
+        }
+    }
+
+    @Test
+    void testAsyncCalculator() throws InterruptedException {
+        Calculator expected = new Calculator_9();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            AsyncCalculator queue = new AsyncCalculator(new ScannerCalculator(), executor, 3, AsyncCalculator.Saturation.QUEUE);
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                for (String input : SAMPLES) {
+                    futures.add(queue.addAsync(input));
+                }
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                String input = SAMPLES[i % SAMPLES.length];
+                CompletableFuture<Integer> future = futures.get(i);
+                assertEquals(outcome(() -> expected.add(input)), outcome(() -> {
+                    try {
+                        return future.join();
+                    } catch (CompletionException e) {
+                        throw (Exception) e.getCause();
+                    }
+                }));
+            }
+            assertArrayEquals(new int[]{3, 7}, queue.addAllAsync("1,2", "3,4").join());
+            CompletionException batch = assertThrows(CompletionException.class, () -> queue.addAllAsync("1,2", "-1").join());
+            assertEquals("1 of 2 inputs failed, first at 1: negatives not allowed: -1", batch.getCause().getMessage());
+            assertEquals(futures.size() + 4, queue.getCompleted());
+            assertEquals(0, queue.getRejected());
+
+            // saturated by inputs blocked in the calculator
+            CountDownLatch latch = new CountDownLatch(1);
+            Calculator blocked = numbers -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return 1;
+            };
+            AsyncCalculator reject = new AsyncCalculator(blocked, executor, 2, AsyncCalculator.Saturation.REJECT);
+            CompletableFuture<int[]> accepted = reject.addAllAsync("1", "1");
+            CompletionException rejected = assertThrows(CompletionException.class, () -> reject.addAsync("1").join());
+            assertEquals(RejectedExecutionException.class, rejected.getCause().getClass());
+            assertEquals(1, reject.getRejected());
+            latch.countDown();
+            assertArrayEquals(new int[]{1, 1}, accepted.join());
+
+            CountDownLatch second = new CountDownLatch(1);
+            AsyncCalculator waiting = new AsyncCalculator(numbers -> {
+                try {
+                    second.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return 2;
+            }, executor, 1, AsyncCalculator.Saturation.QUEUE);
+            // the first input runs alone, the next ones wait, then run in a batch
+            CompletableFuture<Integer> first = waiting.addAsync("a");
+            CompletableFuture<int[]> next = waiting.addAllAsync("b", "c", "d");
+            assertEquals(3, waiting.getQueueDepth());
+            assertEquals(1, waiting.getInFlight());
+            second.countDown();
+            assertEquals(2, (int) first.join());
+            assertArrayEquals(new int[]{2, 2, 2}, next.join());
+            assertEquals(0, waiting.getQueueDepth());
+            assertEquals(4, waiting.getCompleted());
+            assertTrue(waiting.getWaitNanos() > 0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testAsyncCalculatorFailures() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Calculator failing = numbers -> {
+                if (numbers.equals("error")) {
+                    throw new StackOverflowError();
+                }
+                if (numbers.equals("cancel")) {
+                    throw new CancellationException();
+                }
+                return 1;
+            };
+            AsyncCalculator async = new AsyncCalculator(failing, command -> executor.execute(() -> {
+                try {
+                    command.run();
+                } catch (StackOverflowError e) {
+                    // thrown to the executor after the futures are completed
+                }
+            }), 1, AsyncCalculator.Saturation.REJECT);
+            CompletionException error = assertThrows(CompletionException.class, () -> async.addAsync("error").join());
+            assertEquals(StackOverflowError.class, error.getCause().getClass());
+            // the room of the failed input is released
+            assertEquals(0, async.getInFlight());
+            assertEquals(1, (int) async.addAsync("1").join());
+
+            CompletionException batch = assertThrows(CompletionException.class, () -> async.addAllAsync("cancel").join());
+            assertEquals(CancellationException.class, ((BatchException) batch.getCause()).getFailures().get(0).getClass());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testCalculatorServer() throws IOException, InterruptedException {
+        for (CalculatorServer.Framing framing : CalculatorServer.Framing.values()) {
+            try (CalculatorServer server = new CalculatorServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), framing).start()) {
+                CalculatorLoadClient client = new CalculatorLoadClient(server.getAddress(), framing);
+                List<String> inputs = new ArrayList<>();
+                for (String input : SAMPLES) {
+                    if (framing == CalculatorServer.Framing.LENGTH_PREFIXED || !input.replaceFirst("^//[^\n]*\n", "").contains("\n")) {
+                        inputs.add(input);
+                    }
+                }
+                assertThrows(IllegalArgumentException.class, () -> new CalculatorLoadClient(null, CalculatorServer.Framing.LINE).request("1\n2"));
+
+                CalculatorLoadClient.Report report = client.run(inputs, 4, 5_000, 64);
+                assertEquals(20_000, report.getRequests());
+                assertEquals(0, report.getMismatches());
+
+                // requests larger than the pooled buffers
+                List<String> large = framing == CalculatorServer.Framing.LINE ? largeSamples().subList(0, 2) : largeSamples();
+                assertEquals(0, client.run(large, 2, large.size(), large.size()).getMismatches());
+            }
+        }
+    }
+
+    @Test
+    void testCalculatorServerLimits() throws IOException {
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        try (CalculatorServer server = new CalculatorServer(address, CalculatorServer.Framing.LINE, new DelimiterCache(), 1024).start();
+             Socket flooding = new Socket(server.getAddress().getAddress(), server.getAddress().getPort());
+             Socket client = new Socket(server.getAddress().getAddress(), server.getAddress().getPort())) {
+            flooding.setSoTimeout(10_000);
+            client.setSoTimeout(10_000);
+            // a request without new line is cut at the maximum size, only this connection is closed
+            flooding.getOutputStream().write(Strings.repeat("1,", 550).getBytes(UTF_8));
+            assertEquals(-1, flooding.getInputStream().read());
+
+            client.getOutputStream().write("//;\\n1;2\n".getBytes(UTF_8));
+            byte[] response = new byte[2];
+            assertEquals(2, client.getInputStream().read(response));
+            assertEquals("3\n", new String(response, UTF_8));
+        }
+    }
+
+    @Test
+    void testScannerCalculatorFile() throws IOException {
+        Calculator calculator = new ScannerCalculator();
+        Calculator expected = new Calculator_9();
+        Path file = Files.createTempFile("numbers", ".txt");
+        try {
+            for (String input : largeSamples()) {
+                assertFile(expected, calculator, file, input);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testScannerCalculatorParallel() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Calculator calculator = new ScannerCalculator(new DelimiterCache(), pool, 0);
+            Calculator expected = new Calculator_9();
+
+            testSameAsCalculator_9(calculator);
+            for (String input : largeSamples()) {
+                assertEquals(outcome(() -> expected.add(input)), outcome(() -> calculator.add(input)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testDecompressingCalculator() throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Calculator expected = new Calculator_9();
+            // buffers shorter than the delimiters, and a single buffer without overlap
+            List<DecompressingCalculator> calculators = Arrays.asList(
+                    new DecompressingCalculator(new DelimiterCache(), executor, 2, 3),
+                    new DecompressingCalculator(new DelimiterCache(), executor, 1, 100));
+            List<String> inputs = new ArrayList<>(Arrays.asList(SAMPLES));
+            inputs.add("//" + Strings.repeat(";", 100) + "|,\n1" + Strings.repeat(";", 100) + "2,3");
+            inputs.add("1,\u00e9,2");
+            for (DecompressingCalculator.Compression compression : DecompressingCalculator.Compression.values()) {
+                for (String input : inputs) {
+                    byte[] compressed = compress(input.getBytes(UTF_8), compression);
+                    for (DecompressingCalculator calculator : calculators) {
+                        assertEquals(outcome(() -> expected.add(input)),
+                                outcome(() -> calculator.add(new ByteArrayInputStream(compressed), compression)), input);
+                    }
+                }
+            }
+
+            DecompressingCalculator calculator = new DecompressingCalculator();
+            for (String input : largeSamples()) {
+                byte[] compressed = compress(input.getBytes(UTF_8), DecompressingCalculator.Compression.GZIP);
+                assertEquals(streamed(outcome(() -> expected.add(input))),
+                        outcome(() -> calculator.add(new ByteArrayInputStream(compressed), DecompressingCalculator.Compression.GZIP)));
+            }
+            assertTrue(calculator.getDecompressedBytes() > calculator.getCompressedBytes());
+            assertTrue(calculator.getDecompressThroughput() > 0);
+            assertTrue(calculator.getParseThroughput() > 0);
+
+            // malformed bytes are decoded like new String(bytes, UTF_8)
+            byte[] malformed = {'1', ',', (byte) 0xff, ',', '2'};
+            assertEquals(outcome(() -> expected.add(new String(malformed, UTF_8))), outcome(() -> calculator.add(
+                    new ByteArrayInputStream(compress(malformed, DecompressingCalculator.Compression.ZLIB)), DecompressingCalculator.Compression.ZLIB)));
+            assertThrows(ZipException.class,
+                    () -> calculator.add(new ByteArrayInputStream(new byte[]{1, 2, 3}), DecompressingCalculator.Compression.GZIP));
+            assertEquals(0, calculator.add(null, DecompressingCalculator.Compression.GZIP));
+            assertThrows(IllegalArgumentException.class, () -> new DecompressingCalculator(new DelimiterCache(), executor, 0, 1));
+        } finally {
+            executor.shutdown();
+        }
+        // the decompression of a failed input is stopped and none is left waiting for a buffer
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private static byte[] compress(byte[] bytes, DecompressingCalculator.Compression compression) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, compression == DecompressingCalculator.Compression.DEFLATE);
+        try (OutputStream stream = compression == DecompressingCalculator.Compression.GZIP
+                ? new GZIPOutputStream(out) : new DeflaterOutputStream(out, deflater)) {
+            stream.write(bytes);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static List<String> largeSamples() {
+        // split on delimiters of several chars, including non ascii ones
+        StringBuilder numbers = new StringBuilder("//**|*|\u00e9\u00e9|;\n0");
+        for (int i = 1; i <= 1_000_000; i++) {
+            numbers.append(i % 7 == 0 ? "**" : i % 5 == 0 ? "\u00e9\u00e9" : i % 3 == 0 ? "*" : ";").append(i % 1200);
+        }
+        String input = numbers.toString();
+
+        StringBuilder thousands = new StringBuilder("1000");
+        for (int i = 0; i < 2_200_000; i++) {
+            thousands.append(",1000");
+        }
+        return Arrays.asList(
+                input,
+                input + ";",
+                input + ";-5;" + input.substring(input.indexOf('\n') + 1) + ";-7;1;-1",
+                input + ";a;1",
+                "-1;" + input.replace("\n0", "\n0;-2") + ";-3",
+                thousands + ",a",
+                thousands.substring(0, 10_000_000) + ",-1,a"
+        );
+    }
+
+    private void assertFile(Calculator expected, Calculator actual, Path file, String input) throws IOException {
+        Files.write(file, input.getBytes(UTF_8));
+        assertEquals(outcome(() -> expected.add(input)), outcome(() -> actual.addFile(file)));
     }
 
     private void testEmptyArguments(Calculator calculator) {
@@ -350,6 +1348,68 @@ class CalculatorTest {
         assertEquals(1110, calculator.add("//***|%%%|???\n111***222%%%333???444"));
     }
 
+    private void testSameAsCalculator_9(Calculator calculator) {
+        Calculator expected = new Calculator_9();
+        for (String input : SAMPLES) {
+            assertEquals(outcome(() -> expected.add(input)), outcome(() -> calculator.add(input)), input);
+        }
+    }
+
+    private void testOverlappingDelimiters(Calculator calculator) {
+        // the longest delimiter wins
+        assertEquals(3, calculator.add("//*|**\n1**2"));
+        assertEquals(3, calculator.add("//**|*\n1**2"));
+        assertEquals(6, calculator.add("//*|**|***\n1***2*3"));
+        assertEquals(8, calculator.add("//1|12\n5123"));
+        assertThrows(IllegalArgumentException.class, () -> calculator.add("//*|**\n1***2"));
+
+        StringBuilder header = new StringBuilder("//");
+        StringBuilder numbers = new StringBuilder("0");
+        for (int i = 1; i <= 50; i++) {
+            String delimiter = Strings.repeat("#", i % 5) + (char) ('a' + i % 26) + i;
+            header.append(delimiter).append('|');
+            numbers.append(delimiter).append(i);
+        }
+        assertEquals(1275, calculator.add(header.append('\n').append(numbers).toString()));
+    }
+
+    private String outcome(Callable<Integer> add) {
+        try {
+            return String.valueOf(add.call());
+        } catch (Exception e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+
+    /**
+     * The outcome of a calculator scanning a stream, which reports only the first chars of a long invalid number.
+     */
+    private String streamed(String outcome) {
+        String invalid = "IllegalArgumentException: Invalid number: '";
+        int length = outcome.length() - invalid.length() - 1;
+        if (!outcome.startsWith(invalid) || length <= IncrementalScanner.MAX_TOKEN_PREFIX) {
+            return outcome;
+        }
+        return outcome.substring(0, invalid.length() + IncrementalScanner.MAX_TOKEN_PREFIX) + "...' (" + length + " chars)";
+    }
+
+    private String columns(Callable<long[]> add) {
+        try {
+            return Arrays.toString(add.call());
+        } catch (Exception e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+
+    private Reader trickle(String input) {
+        return new FilterReader(new StringReader(input)) {
+            @Override
+            public int read(char[] chars, int offset, int length) throws IOException {
+                return super.read(chars, offset, Math.min(length, 1));
+            }
+        };
+    }
+
     private void assertThrowsWithMessage(String message, Executable executable) {
         final IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, executable);
         assertEquals(message, thrown.getMessage());